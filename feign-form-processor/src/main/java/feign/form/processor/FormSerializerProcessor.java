@@ -0,0 +1,299 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.processor;
+
+import static javax.lang.model.util.ElementFilter.fieldsIn;
+import static javax.tools.Diagnostic.Kind.ERROR;
+import static javax.tools.Diagnostic.Kind.WARNING;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+import feign.form.FormProperty;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Generates a {@link feign.form.util.PojoSerializer} for every class with
+ * {@link FormProperty} annotated fields, and registers them in
+ * {@code META-INF/services/feign.form.util.PojoSerializer}.
+ * <p>
+ * The generated serializer lives in the DTO's package and reads the same properties as
+ * {@link feign.form.util.PojoUtil} does, without reflection: the non-static and non-final fields, directly.
+ * A class with a private property field is reported with a warning and left to the reflective path.
+ *
+ * @author Artem Labazin
+ */
+@SupportedAnnotationTypes("feign.form.FormProperty")
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class FormSerializerProcessor extends AbstractProcessor {
+
+  private static final String SERVICES_FILE = "META-INF/services/feign.form.util.PojoSerializer";
+
+  private static final String SUFFIX = "_FormSerializer";
+
+  private static final String ENCODING = "UTF-8";
+
+  Set<TypeElement> processed = new LinkedHashSet<TypeElement>();
+
+  Set<String> serializers = new TreeSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion () {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      if (!serializers.isEmpty()) {
+        writeServicesFile();
+      }
+      return false;
+    }
+
+    val types = new LinkedHashSet<TypeElement>();
+    for (val element : roundEnv.getElementsAnnotatedWith(FormProperty.class)) {
+      val enclosing = element.getEnclosingElement();
+      if (enclosing instanceof TypeElement) {
+        types.add((TypeElement) enclosing);
+      }
+    }
+    for (TypeElement type : types) {
+      if (processed.add(type)) {
+        generate(type);
+      }
+    }
+    return false;
+  }
+
+  private void generate (TypeElement type) {
+    if (!isAccessible(type)) {
+      skip(type, "is not accessible from its package");
+      return;
+    }
+
+    Map<String, String> properties = new LinkedHashMap<String, String>();
+    for (VariableElement field : fieldsIn(type.getEnclosedElements())) {
+      val modifiers = field.getModifiers();
+      if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+        continue;
+      }
+      if (modifiers.contains(Modifier.PRIVATE)) {
+        skip(type, "has private field '" + field.getSimpleName() + "'");
+        return;
+      }
+      properties.put(getPropertyName(field), field.getSimpleName().toString());
+    }
+
+    String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    String simpleName = getSerializerSimpleName(type);
+    val qualifiedName = packageName.isEmpty()
+                        ? simpleName
+                        : packageName + '.' + simpleName;
+    try {
+      val file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+      Writer writer = file.openWriter();
+      try {
+        writeSource(new PrintWriter(writer), packageName, simpleName, type.getQualifiedName().toString(), properties);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(ERROR, "Unable to write " + qualifiedName + ": " + ex.getMessage(), type);
+      return;
+    }
+    serializers.add(qualifiedName);
+  }
+
+  private boolean isAccessible (TypeElement type) {
+    Element element = type;
+    while (element instanceof TypeElement) {
+      val nestingKind = ((TypeElement) element).getNestingKind();
+      if (element.getModifiers().contains(Modifier.PRIVATE)
+          || nestingKind == NestingKind.LOCAL
+          || nestingKind == NestingKind.ANONYMOUS) {
+        return false;
+      }
+      element = element.getEnclosingElement();
+    }
+    return true;
+  }
+
+  private String getPropertyName (VariableElement field) {
+    val annotation = field.getAnnotation(FormProperty.class);
+    return annotation == null
+           ? field.getSimpleName().toString()
+           : annotation.value();
+  }
+
+  private String getSerializerSimpleName (TypeElement type) {
+    val result = new StringBuilder(type.getSimpleName()).append(SUFFIX);
+    Element element = type.getEnclosingElement();
+    while (element instanceof TypeElement) {
+      result.insert(0, '_').insert(0, element.getSimpleName());
+      element = element.getEnclosingElement();
+    }
+    return result.toString();
+  }
+
+  private void writeSource (PrintWriter out, String packageName, String simpleName, String typeName, Map<String, String> properties) {
+    if (!packageName.isEmpty()) {
+      out.println("package " + packageName + ';');
+      out.println();
+    }
+    out.println("import java.util.Arrays;");
+    out.println("import java.util.Collections;");
+    out.println("import java.util.List;");
+    out.println();
+    out.println("import feign.form.util.PojoProperty;");
+    out.println("import feign.form.util.PojoSerializer;");
+    out.println();
+    out.println("/**");
+    out.println(" * Form serializer of {@link " + typeName + "}, generated by feign-form-processor.");
+    out.println(" */");
+    out.println("public final class " + simpleName + " implements PojoSerializer {");
+    out.println();
+    out.println("  private static final List<PojoProperty> PROPERTIES = Collections.unmodifiableList(Arrays.<PojoProperty>asList(");
+    val iterator = properties.entrySet().iterator();
+    while (iterator.hasNext()) {
+      val property = iterator.next();
+      out.println("      new PojoProperty(" + quote(property.getKey()) + ") {");
+      out.println();
+      out.println("        @Override");
+      out.println("        public Object getValue (Object object) {");
+      out.println("          return ((" + typeName + ") object)." + property.getValue() + ';');
+      out.println("        }");
+      out.println(iterator.hasNext()
+                  ? "      },"
+                  : "      }");
+    }
+    out.println("  ));");
+    out.println();
+    out.println("  @Override");
+    out.println("  public Class<?> getType () {");
+    out.println("    return " + typeName + ".class;");
+    out.println("  }");
+    out.println();
+    out.println("  @Override");
+    out.println("  public List<PojoProperty> getProperties () {");
+    out.println("    return PROPERTIES;");
+    out.println("  }");
+    out.println("}");
+    out.flush();
+  }
+
+  private void writeServicesFile () {
+    val filer = processingEnv.getFiler();
+    val lines = new TreeSet<String>(serializers);
+    // keep the entries of the previous (incremental) compilations, but not of the removed serializers
+    val elements = processingEnv.getElementUtils();
+    for (val line : readExistingServices()) {
+      if (elements.getTypeElement(line) != null) {
+        lines.add(line);
+      }
+    }
+
+    try {
+      val file = filer.createResource(CLASS_OUTPUT, "", SERVICES_FILE);
+      val out = new PrintWriter(new OutputStreamWriter(file.openOutputStream(), ENCODING));
+      try {
+        for (val line : lines) {
+          out.println(line);
+        }
+      } finally {
+        out.close();
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(ERROR, "Unable to write " + SERVICES_FILE + ": " + ex.getMessage());
+    }
+  }
+
+  private Collection<String> readExistingServices () {
+    try {
+      return readLines(processingEnv.getFiler().getResource(CLASS_OUTPUT, "", SERVICES_FILE).openInputStream());
+    } catch (IOException ex) {
+      return Collections.emptyList();
+    }
+  }
+
+  private Collection<String> readLines (InputStream inputStream) throws IOException {
+    val result = new ArrayList<String>();
+    val reader = new BufferedReader(new InputStreamReader(inputStream, ENCODING));
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        val trimmed = line.trim();
+        if (!trimmed.isEmpty() && trimmed.charAt(0) != '#') {
+          result.add(trimmed);
+        }
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+    return result;
+  }
+
+  private void skip (TypeElement type, String reason) {
+    processingEnv.getMessager().printMessage(
+        WARNING,
+        type.getQualifiedName() + " " + reason + ", form serializer is not generated",
+        type
+    );
+  }
+
+  private static String quote (String value) {
+    val result = new StringBuilder(value.length() + 2).append('"');
+    for (int index = 0; index < value.length(); index++) {
+      val character = value.charAt(index);
+      if (character == '"' || character == '\\') {
+        result.append('\\').append(character);
+      } else if (Character.isISOControl(character)) {
+        result.append(String.format("\\u%04x", (int) character));
+      } else {
+        result.append(character);
+      }
+    }
+    return result.append('"').toString();
+  }
+}
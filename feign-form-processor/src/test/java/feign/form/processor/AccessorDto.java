@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.processor;
+
+import feign.form.FormProperty;
+
+/**
+ * @author Artem Labazin
+ */
+public final class AccessorDto {
+
+  @FormProperty("title")
+  String name = " popa ";
+
+  int count = 42;
+
+  String label = "field";
+
+  boolean active = true;
+
+  final String kind = "accessor";
+
+  public String getName () {
+    return name.trim();
+  }
+
+  int getCount () {
+    return count * 2;
+  }
+
+  public String isLabel () {
+    return "getter";
+  }
+
+  public boolean isActive () {
+    return active;
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import javax.tools.ToolProvider;
+
+import feign.form.util.PojoSerializer;
+import feign.form.util.PojoUtil;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class FormSerializerProcessorTest {
+
+  private static Map<Class<?>, PojoSerializer> loadSerializers () {
+    val result = new HashMap<Class<?>, PojoSerializer>();
+    for (val serializer : ServiceLoader.load(PojoSerializer.class)) {
+      result.put(serializer.getType(), serializer);
+    }
+    return result;
+  }
+
+  @Test
+  public void generated () {
+    val serializers = loadSerializers();
+
+    assertThat(serializers).containsKey(OrderDto.class);
+    assertThat(serializers.get(OrderDto.class).getClass().getName())
+        .isEqualTo("feign.form.processor.OrderDto_FormSerializer");
+    assertThat(PojoUtil.getProperties(OrderDto.class))
+        .isSameAs(serializers.get(OrderDto.class).getProperties());
+
+    val map = PojoUtil.toMap(new OrderDto("42", 100, true, null));
+    assertThat(map).containsExactly(
+        entry("order_id", "42"),
+        entry("amount", 100),
+        entry("paid", true)
+    );
+  }
+
+  @Test
+  public void notGenerated () {
+    assertThat(loadSerializers()).doesNotContainKey(HiddenFieldDto.class);
+
+    val map = PojoUtil.toMap(new HiddenFieldDto("one", "two"));
+    assertThat(map).containsExactly(
+        entry("visible_name", "one"),
+        entry("hidden", "two")
+    );
+  }
+
+  @Test
+  public void generatedEqualsReflective () throws Exception {
+    assertThat(loadSerializers()).containsKey(AccessorDto.class);
+    val generated = PojoUtil.toMap(new AccessorDto());
+
+    val reflectiveType = new IsolatedClassLoader(null).loadClass(AccessorDto.class.getName());
+    assertThat(reflectiveType).isNotSameAs(AccessorDto.class);
+    val reflective = PojoUtil.toMap(reflectiveType.newInstance());
+
+    assertThat(generated).isEqualTo(reflective);
+    assertThat(generated).containsExactly(
+        entry("title", " popa "),
+        entry("count", 42),
+        entry("label", "field"),
+        entry("active", true)
+    );
+  }
+
+  @Test
+  public void staleServiceEntryFallsBackToReflection () throws Exception {
+    val services = Files.createTempFile("services", ".txt");
+    services.toFile().deleteOnExit();
+    Files.write(services, asList("feign.form.processor.RemovedDto_FormSerializer"), UTF_8);
+
+    val type = new IsolatedClassLoader(services.toUri().toURL()).loadClass(AccessorDto.class.getName());
+    assertThat(PojoUtil.toMap(type.newInstance())).containsEntry("title", " popa ");
+  }
+
+  @Test
+  public void staleServiceEntriesArePruned () throws Exception {
+    val root = Files.createTempDirectory("processor");
+    val source = root.resolve("SampleDto.java");
+    Files.write(source, asList(
+        "package sample;",
+        "public class SampleDto {",
+        "  @feign.form.FormProperty(\"name\") public String name;",
+        "}"
+    ), UTF_8);
+    val output = Files.createDirectories(root.resolve("classes"));
+    val services = Files.createDirectories(output.resolve("META-INF/services")).resolve(PojoSerializer.class.getName());
+    Files.write(services, asList("sample.RemovedDto_FormSerializer"), UTF_8);
+
+    val compiler = ToolProvider.getSystemJavaCompiler();
+    val fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    val compiled = compiler.getTask(null, fileManager, null, asList(
+        "-d", output.toString(),
+        "-classpath", System.getProperty("java.class.path") + File.pathSeparator + output,
+        "-processor", FormSerializerProcessor.class.getName()
+    ), null, fileManager.getJavaFileObjects(source.toFile())).call();
+
+    assertThat(compiled).isTrue();
+    assertThat(Files.readAllLines(services, UTF_8)).containsExactly("sample.SampleDto_FormSerializer");
+  }
+
+  /**
+   * Loads the DTO class again with the specified serializers list (or without it),
+   * so the generated serializer doesn't match the class and the class is read by the reflective path.
+   */
+  private static final class IsolatedClassLoader extends ClassLoader {
+
+    private final URL services;
+
+    IsolatedClassLoader (URL services) {
+      super(FormSerializerProcessorTest.class.getClassLoader());
+      this.services = services;
+    }
+
+    @Override
+    protected Class<?> loadClass (String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.equals(AccessorDto.class.getName())) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> result = findLoadedClass(name);
+        if (result == null) {
+          val bytes = readClass(name);
+          result = defineClass(name, bytes, 0, bytes.length);
+        }
+        return result;
+      }
+    }
+
+    @Override
+    public Enumeration<URL> getResources (String name) throws IOException {
+      if (!name.startsWith("META-INF/services/")) {
+        return super.getResources(name);
+      }
+      return services == null
+             ? Collections.<URL>emptyEnumeration()
+             : Collections.enumeration(asList(services));
+    }
+
+    private byte[] readClass (String name) throws ClassNotFoundException {
+      try (InputStream input = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+        val output = new ByteArrayOutputStream();
+        val buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+          output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+      } catch (IOException ex) {
+        throw new ClassNotFoundException(name, ex);
+      }
+    }
+  }
+}
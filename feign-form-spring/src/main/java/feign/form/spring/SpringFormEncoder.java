@@ -21,10 +21,13 @@ import static java.util.Collections.singletonMap;
 
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
+import feign.form.EncodingFuture;
 import feign.form.FormEncoder;
 import feign.form.MultipartFormContentProcessor;
 
@@ -56,22 +59,38 @@ public class SpringFormEncoder extends FormEncoder {
 
     val processor = (MultipartFormContentProcessor) getContentProcessor(MULTIPART);
     processor.addFirstWriter(new SpringSingleMultipartFileWriter());
-    processor.addFirstWriter(new SpringManyMultipartFilesWriter());
   }
 
   @Override
   public void encode (Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+    val data = toMultipartFilesData(object, bodyType);
+    if (data == null) {
+      super.encode(object, bodyType, template);
+    } else {
+      super.encode(data, MAP_STRING_WILDCARD, template);
+    }
+  }
+
+  @Override
+  public EncodingFuture encodeAsync (Object object, Type bodyType, RequestTemplate template, Executor executor
+  ) throws EncodeException {
+    val data = toMultipartFilesData(object, bodyType);
+    return data == null
+           ? super.encodeAsync(object, bodyType, template, executor)
+           : super.encodeAsync(data, MAP_STRING_WILDCARD, template, executor);
+  }
+
+  private Map<String, Object> toMultipartFilesData (Object object, Type bodyType) {
     if (bodyType.equals(MultipartFile[].class)) {
       val files = (MultipartFile[]) object;
       val data = new HashMap<String, Object>(files.length, 1.F);
       for (val file : files) {
         data.put(file.getName(), file);
       }
-      super.encode(data, MAP_STRING_WILDCARD, template);
+      return data;
     } else if (bodyType.equals(MultipartFile.class)) {
       val file = (MultipartFile) object;
-      val data = singletonMap(file.getName(), object);
-      super.encode(data, MAP_STRING_WILDCARD, template);
+      return singletonMap(file.getName(), object);
     } else if (isMultipartFileCollection(object)) {
       val iterable = (Iterable<?>) object;
       val data = new HashMap<String, Object>();
@@ -79,10 +98,9 @@ public class SpringFormEncoder extends FormEncoder {
         val file = (MultipartFile) item;
         data.put(file.getName(), file);
       }
-      super.encode(data, MAP_STRING_WILDCARD, template);
-    } else {
-      super.encode(object, bodyType, template);
+      return data;
     }
+    return null;
   }
 
   private boolean isMultipartFileCollection (Object object) {
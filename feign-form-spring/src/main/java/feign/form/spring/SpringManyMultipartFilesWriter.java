@@ -16,6 +16,9 @@
 
 package feign.form.spring;
 
+import static feign.form.multipart.TypedWriter.Applicability.ALWAYS;
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static feign.form.multipart.TypedWriter.Applicability.NEVER;
 import static lombok.AccessLevel.PRIVATE;
 
 import feign.codec.EncodeException;
@@ -29,7 +32,10 @@ import org.springframework.web.multipart.MultipartFile;
 /**
  *
  * @author Artem Labazin
+ * @deprecated the processor writes the collections by {@link feign.form.multipart.CollectionWriter},
+ *             which writes the {@link MultipartFile} elements by {@link SpringSingleMultipartFileWriter}.
  */
+@Deprecated
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class SpringManyMultipartFilesWriter extends AbstractWriter {
 
@@ -48,6 +54,16 @@ public class SpringManyMultipartFilesWriter extends AbstractWriter {
     return iterator.hasNext() && iterator.next() instanceof MultipartFile;
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    if (MultipartFile[].class.isAssignableFrom(type)) {
+      return ALWAYS;
+    }
+    return Iterable.class.isAssignableFrom(type)
+           ? DEPENDS_ON_VALUE
+           : NEVER;
+  }
+
   @Override
   public void write (Output output, String boundary, String key, Object value) throws EncodeException {
     if (value instanceof MultipartFile[]) {
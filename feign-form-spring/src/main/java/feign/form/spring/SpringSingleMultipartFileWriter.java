@@ -35,10 +35,19 @@ public class SpringSingleMultipartFileWriter extends AbstractWriter {
     return value instanceof MultipartFile;
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(MultipartFile.class.isAssignableFrom(type));
+  }
+
   @Override
   protected void write (Output output, String key, Object value) throws EncodeException {
     val file = (MultipartFile) value;
     writeFileMetadata(output, key, file.getOriginalFilename(), file.getContentType());
+    if (output.isCounting()) {
+      output.count(file.getSize());
+      return;
+    }
 
     byte[] bytes;
     try {
@@ -46,6 +55,6 @@ public class SpringSingleMultipartFileWriter extends AbstractWriter {
     } catch (IOException ex) {
       throw new EncodeException("Getting multipart file's content bytes error", ex);
     }
-    output.write(bytes);
+    output.writeShared(bytes, 0, bytes.length);
   }
 }
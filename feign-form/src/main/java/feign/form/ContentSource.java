@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Re-openable part's content. Unlike a plain {@link InputStream}, the source could be read
+ * any number of times - every time the body is written (for example, on the Feign's {@code Retryer} retries)
+ * a fresh stream is opened, so the body is never buffered for replay.
+ * <p>
+ * The one-shot sources of {@link ContentSources} wrap the plain streams and channels.
+ *
+ * @author Artem Labazin
+ */
+public interface ContentSource {
+
+  /**
+   * Opens a new stream, which reads the content from the beginning.
+   * The stream is closed by the caller.
+   *
+   * @return content stream.
+   *
+   * @throws IOException in case of opening error.
+   */
+  InputStream openStream () throws IOException;
+
+  /**
+   * Returns the content length. Every opened stream must have exactly this number of bytes.
+   * If the length is unknown, the whole stream is written and the request is sent with chunked transfer encoding.
+   *
+   * @return content length in bytes, or {@code -1} if it is unknown.
+   */
+  long getLength ();
+}
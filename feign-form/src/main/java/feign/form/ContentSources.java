@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.PathUtil.isPath;
+import static feign.form.util.PojoUtil.getProperties;
+import static feign.form.util.PojoUtil.isUserPojo;
+import static feign.form.util.StreamUtil.isStream;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.rmi.UnexpectedException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import feign.form.util.PojoProperty;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * {@link ContentSource} utilities.
+ *
+ * @author Artem Labazin
+ */
+public final class ContentSources {
+
+  /**
+   * Creates a one-shot source of unknown length, which could be opened only once.
+   *
+   * @param inputStream source's stream.
+   *
+   * @return one-shot content source.
+   */
+  public static ContentSource of (InputStream inputStream) {
+    return of(inputStream, -1);
+  }
+
+  /**
+   * Creates a one-shot source, which could be opened only once.
+   *
+   * @param inputStream source's stream.
+   * @param length      content length, or {@code -1} if it is unknown.
+   *
+   * @return one-shot content source.
+   */
+  public static ContentSource of (InputStream inputStream, long length) {
+    return new OneShotSource(inputStream, length);
+  }
+
+  /**
+   * Creates a one-shot source of unknown length, which could be opened only once.
+   *
+   * @param channel source's channel.
+   *
+   * @return one-shot content source.
+   */
+  public static ContentSource of (ReadableByteChannel channel) {
+    return of(channel, -1);
+  }
+
+  /**
+   * Creates a one-shot source, which could be opened only once.
+   *
+   * @param channel source's channel.
+   * @param length  content length, or {@code -1} if it is unknown.
+   *
+   * @return one-shot content source.
+   */
+  public static ContentSource of (ReadableByteChannel channel, long length) {
+    return of(Channels.newInputStream(channel), length);
+  }
+
+  /**
+   * Tells if the part's value could be written more than once. The plain streams, channels,
+   * one-shot sources (also inside {@link StreamingFormData}) and {@code java.util.stream.Stream}s
+   * could be read only once. The arrays, iterables, maps and POJOs are repeatable only if all their
+   * elements and properties are, they are walked the same way the writers and the flattener walk them.
+   *
+   * @param value part's value.
+   *
+   * @return {@code false} if the value is one-shot or contains one-shot values.
+   */
+  public static boolean isRepeatable (Object value) {
+    if (value instanceof StreamingFormData) {
+      return isRepeatable(((StreamingFormData) value).getSource());
+    }
+    if (value instanceof InputStream
+        || value instanceof ReadableByteChannel
+        || value instanceof OneShotSource
+        || isStream(value)) {
+      return false;
+    }
+    if (value instanceof Object[]) {
+      return isRepeatable(Arrays.asList((Object[]) value));
+    }
+    if (value instanceof Iterable && !isPath(value)) {
+      return isRepeatable((Iterable<?>) value);
+    }
+    if (value instanceof Map) {
+      return isRepeatable(((Map<?, ?>) value).values());
+    }
+    return !isNestedPojo(value) || isPojoRepeatable(value);
+  }
+
+  private static boolean isRepeatable (Iterable<?> elements) {
+    for (Object element : elements) {
+      if (!isRepeatable(element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNestedPojo (Object value) {
+    // the sources are opaque, and the arrays of primitives don't have a package
+    return value != null
+           && !(value instanceof ContentSource)
+           && value.getClass().getPackage() != null
+           && isUserPojo(value);
+  }
+
+  private static boolean isPojoRepeatable (Object pojo) {
+    for (PojoProperty property : getProperties(pojo.getClass())) {
+      if (!isRepeatable(property.getValue(pojo))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private ContentSources () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class OneShotSource implements ContentSource {
+
+    InputStream inputStream;
+
+    long length;
+
+    AtomicBoolean opened = new AtomicBoolean();
+
+    OneShotSource (InputStream inputStream, long length) {
+      this.inputStream = inputStream;
+      this.length = length;
+    }
+
+    @Override
+    public InputStream openStream () {
+      if (opened.getAndSet(true)) {
+        throw new IllegalStateException("One-shot content source could be opened only once");
+      }
+      return inputStream;
+    }
+
+    @Override
+    public long getLength () {
+      return length;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import feign.Request;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+/**
+ * The future request body of the asynchronous encoding (see {@link FormEncoder#encodeAsync}),
+ * which notifies its listeners, when the body is ready, so the caller (for example, an event loop)
+ * never blocks on {@link #get()}.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class EncodingFuture extends FutureTask<Request.Body> {
+
+  List<Listener> listeners = new ArrayList<Listener>();
+
+  @NonFinal
+  boolean notified;
+
+  EncodingFuture (Callable<Request.Body> callable) {
+    super(callable);
+  }
+
+  /**
+   * Adds the listener, which is notified by the encoding thread, when the body is ready or the encoding fails.
+   * If the future is done already, the listener is notified right away by the calling thread.
+   *
+   * @param listener body listener.
+   */
+  public void addListener (Listener listener) {
+    synchronized (listeners) {
+      if (!notified) {
+        listeners.add(listener);
+        return;
+      }
+    }
+    inform(listener);
+  }
+
+  @Override
+  protected void done () {
+    List<Listener> waiting;
+    synchronized (listeners) {
+      notified = true;
+      waiting = new ArrayList<Listener>(listeners);
+      listeners.clear();
+    }
+    for (Listener listener : waiting) {
+      inform(listener);
+    }
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private void inform (Listener listener) {
+    Request.Body body;
+    try {
+      // the future is done, so it doesn't block
+      body = get();
+    } catch (ExecutionException ex) {
+      listener.failed(ex.getCause());
+      return;
+    } catch (CancellationException ex) {
+      listener.failed(ex);
+      return;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      listener.failed(ex);
+      return;
+    }
+    listener.completed(body);
+  }
+
+  /**
+   * The listener of the encoded body.
+   */
+  public interface Listener {
+
+    /**
+     * Called, when the body is encoded.
+     *
+     * @param body the request body, it must be set to the template: {@code template.body(body)}.
+     */
+    void completed (Request.Body body);
+
+    /**
+     * Called, when the encoding fails or is cancelled.
+     *
+     * @param cause the failure cause.
+     */
+    void failed (Throwable cause);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+/**
+ * The way the nested POJOs, maps and collections of them are flattened to the form keys
+ * (see {@link MultipartFormContentProcessor#setFlatteningStyle(FlatteningStyle)}).
+ *
+ * @author Artem Labazin
+ */
+public enum FlatteningStyle {
+
+  /**
+   * The nested values are not flattened (default). The nested POJO's properties are written
+   * with their own names, the nested maps are encoded by the delegate encoder.
+   */
+  NONE {
+
+    @Override
+    String property (String prefix, String name) {
+      return name;
+    }
+  },
+
+  /**
+   * The dot-separated keys, like {@code a.b.c} and {@code a[0].b}.
+   */
+  DOTS {
+
+    @Override
+    String property (String prefix, String name) {
+      return prefix + '.' + name;
+    }
+  },
+
+  /**
+   * The bracketed keys, like {@code a[b][c]} and {@code a[0][b]}.
+   */
+  BRACKETS {
+
+    @Override
+    String property (String prefix, String name) {
+      return prefix + '[' + name + ']';
+    }
+  };
+
+  /**
+   * Builds the nested property's key.
+   *
+   * @param prefix the owner's key.
+   * @param name   property's name or map's key.
+   *
+   * @return property's key.
+   */
+  abstract String property (String prefix, String name);
+
+  /**
+   * Builds the collection element's key.
+   *
+   * @param prefix the collection's key.
+   * @param index  element's index.
+   *
+   * @return element's key.
+   */
+  String element (String prefix, int index) {
+    return prefix + '[' + index + ']';
+  }
+}
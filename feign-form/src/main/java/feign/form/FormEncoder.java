@@ -16,7 +16,7 @@
 
 package feign.form;
 
-import static feign.form.util.CharsetUtil.UTF_8;
+import static feign.form.ContentType.MULTIPART;
 import static feign.form.util.PojoUtil.isUserPojo;
 import static feign.form.util.PojoUtil.toMap;
 import static java.util.Arrays.asList;
@@ -27,8 +27,11 @@ import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
+import feign.Contract;
+import feign.Request;
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
@@ -44,17 +47,16 @@ public class FormEncoder implements Encoder {
 
   private static final String CONTENT_TYPE_HEADER;
 
-  private static final Pattern CHARSET_PATTERN;
-
   static {
     CONTENT_TYPE_HEADER = "Content-Type";
-    CHARSET_PATTERN = Pattern.compile("(?<=charset=)([\\w\\-]+)");
   }
 
   Encoder delegate;
 
   Map<ContentType, ContentProcessor> processors;
 
+  FormPlans plans;
+
   /**
    * Constructor with the default Feign's encoder as a delegate.
    */
@@ -79,30 +81,153 @@ public class FormEncoder implements Encoder {
     for (ContentProcessor processor : list) {
       processors.put(processor.getSupportedContentType(), processor);
     }
+    plans = new FormPlans(processors);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public void encode (Object object, Type bodyType, RequestTemplate template) throws EncodeException {
-    String contentTypeValue = getContentTypeValue(template.headers());
-    val contentType = ContentType.of(contentTypeValue);
-    if (!processors.containsKey(contentType)) {
-      delegate.encode(object, bodyType, template);
+    if (object instanceof PreparedForm.Bound) {
+      ((PreparedForm.Bound) object).encode(template);
       return;
     }
 
-    Map<String, Object> data;
-    if (MAP_STRING_WILDCARD.equals(bodyType)) {
-      data = (Map<String, Object>) object;
-    } else if (isUserPojo(bodyType)) {
-      data = toMap(object);
-    } else {
+    val contentTypeValue = getContentTypeValue(template.headers());
+    val plan = plans.find(template, contentTypeValue);
+    if (plan != null && object instanceof Map) {
+      plan.getProcessor().process(template, plan.getCharset(), asFormData(object));
+      return;
+    }
+
+    val contentTypeHeader = ParsedContentType.of(contentTypeValue);
+    val data = toFormData(contentTypeHeader.getContentType(), object, bodyType);
+    if (data == null) {
       delegate.encode(object, bodyType, template);
       return;
     }
+    processors.get(contentTypeHeader.getContentType()).process(template, contentTypeHeader.getCharset(), data);
+  }
+
+  /**
+   * Asynchronous version of {@link #encode(Object, Type, RequestTemplate)}. The multipart bodies, including
+   * the bound prepared forms, are encoded by the executor (see {@link MultipartFormContentProcessor#processAsync}
+   * and {@link PreparedForm#encodeAsync}), so the calling thread never blocks on the parts' I/O,
+   * all other bodies are encoded right away.
+   * <p>
+   * The template's headers are set before this method returns, but the body must be set by the caller,
+   * when the future is done: {@code template.body(future.get())}, or right in the future's listener
+   * (see {@link EncodingFuture#addListener(EncodingFuture.Listener)}), so the caller never blocks.
+   *
+   * @param object   what to encode as the request body.
+   * @param bodyType the type the object should be encoded as.
+   * @param template the request template.
+   * @param executor executor, which encodes the multipart bodies.
+   *
+   * @return the future body.
+   *
+   * @throws EncodeException when encoding failed due to a checked exception.
+   */
+  public EncodingFuture encodeAsync (Object object, Type bodyType, RequestTemplate template, Executor executor
+  ) throws EncodeException {
+    // the static parts of the prepared forms are encoded already
+    if (object instanceof PreparedForm.Bound) {
+      return ((PreparedForm.Bound) object).encodeAsync(template, executor);
+    }
+
+    val contentTypeValue = getContentTypeValue(template.headers());
+    val plan = plans.find(template, contentTypeValue);
+    if (plan != null && object instanceof Map) {
+      return processAsync(plan.getProcessor(), template, plan.getCharset(), asFormData(object), executor);
+    }
+
+    val contentTypeHeader = ParsedContentType.of(contentTypeValue);
+    val data = toFormData(contentTypeHeader.getContentType(), object, bodyType);
+    if (data == null) {
+      delegate.encode(object, bodyType, template);
+      return completed(template.requestBody());
+    }
+    val processor = processors.get(contentTypeHeader.getContentType());
+    return processAsync(processor, template, contentTypeHeader.getCharset(), data, executor);
+  }
+
+  /**
+   * Decorates the contract, so the form encoding of each client's method is compiled once,
+   * when the client is built: the processor and the charset are resolved from the method's
+   * {@code Content-Type}, so each call neither parses the header nor checks the body type.
+   * <p>
+   * The decorated contract must be used with this encoder.
+   * <pre>
+   * val encoder = new FormEncoder();
+   * val client = Feign.builder()
+   *     .contract(encoder.contract(new Contract.Default()))
+   *     .encoder(encoder)
+   *     .target(Api.class, url);
+   * </pre>
+   *
+   * @param contract the contract, which parses the methods' metadata.
+   *
+   * @return planning contract.
+   */
+  public final Contract contract (Contract contract) {
+    return plans.decorate(contract);
+  }
+
+  /**
+   * Sets the minimal size of the multipart bodies, which are encoded off-heap
+   * (see {@link MultipartFormContentProcessor#setOffHeapThreshold(long)}).
+   *
+   * @param offHeapThreshold minimal off-heap body size in bytes, {@link Long#MAX_VALUE} turns the mode off.
+   */
+  public final void setOffHeapThreshold (long offHeapThreshold) {
+    val processor = processors.get(MULTIPART);
+    if (processor instanceof MultipartFormContentProcessor) {
+      ((MultipartFormContentProcessor) processor).setOffHeapThreshold(offHeapThreshold);
+    }
+  }
+
+  /**
+   * Sets the factory of the JSON serializers of the multipart parts
+   * (see {@link MultipartFormContentProcessor#setJsonSerializerFactory(JsonSerializer.Factory)}).
+   *
+   * @param jsonSerializerFactory JSON serializers factory, {@code null} turns the delegate encoder back.
+   */
+  public final void setJsonSerializerFactory (JsonSerializer.Factory jsonSerializerFactory) {
+    val processor = processors.get(MULTIPART);
+    if (processor instanceof MultipartFormContentProcessor) {
+      ((MultipartFormContentProcessor) processor).setJsonSerializerFactory(jsonSerializerFactory);
+    }
+  }
+
+  /**
+   * Sets the way the nested POJOs, maps and collections of them are flattened to the keys
+   * for both multipart and urlencoded forms (see {@link FlatteningStyle}).
+   *
+   * @param flatteningStyle flattening style, {@link FlatteningStyle#NONE} turns the flattening off (default).
+   */
+  public final void setFlatteningStyle (FlatteningStyle flatteningStyle) {
+    for (ContentProcessor processor : processors.values()) {
+      if (processor instanceof MultipartFormContentProcessor) {
+        ((MultipartFormContentProcessor) processor).setFlatteningStyle(flatteningStyle);
+      } else if (processor instanceof UrlencodedFormContentProcessor) {
+        ((UrlencodedFormContentProcessor) processor).setFlatteningStyle(flatteningStyle);
+      }
+    }
+  }
 
-    val charset = getCharset(contentTypeValue);
-    processors.get(contentType).process(template, charset, data);
+  /**
+   * Registers the formatter of the scalar values of the class and its subclasses
+   * for both multipart and urlencoded forms (see {@link ValueFormatters#register(Class, ValueFormatter)}).
+   *
+   * @param type      values class.
+   * @param formatter class's formatter.
+   */
+  public final void registerValueFormatter (Class<?> type, ValueFormatter formatter) {
+    for (ContentProcessor processor : processors.values()) {
+      if (processor instanceof MultipartFormContentProcessor) {
+        ((MultipartFormContentProcessor) processor).getValueFormatters().register(type, formatter);
+      } else if (processor instanceof UrlencodedFormContentProcessor) {
+        ((UrlencodedFormContentProcessor) processor).getValueFormatters().register(type, formatter);
+      }
+    }
   }
 
   /**
@@ -116,26 +241,76 @@ public class FormEncoder implements Encoder {
     return processors.get(type);
   }
 
-  @SuppressWarnings("PMD.AvoidBranchingStatementAsLastInLoop")
-  private String getContentTypeValue (Map<String, Collection<String>> headers) {
+  private static EncodingFuture processAsync (ContentProcessor processor, RequestTemplate template,
+                                                   Charset charset, Map<String, Object> data, Executor executor
+  ) {
+    if (processor instanceof MultipartFormContentProcessor) {
+      return ((MultipartFormContentProcessor) processor).processAsync(template, charset, data, executor);
+    }
+    processor.process(template, charset, data);
+    return completed(template.requestBody());
+  }
+
+  private static EncodingFuture completed (final Request.Body body) {
+    val future = new EncodingFuture(new Callable<Request.Body>() {
+
+      @Override
+      public Request.Body call () {
+        return body;
+      }
+    });
+    future.run();
+    return future;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> asFormData (Object object) {
+    return (Map<String, Object>) object;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> toFormData (ContentType contentType, Object object, Type bodyType) {
+    if (!processors.containsKey(contentType)) {
+      return null;
+    }
+    if (MAP_STRING_WILDCARD.equals(bodyType)) {
+      return (Map<String, Object>) object;
+    }
+    if (isUserPojo(bodyType)) {
+      return toMap(object);
+    }
+    return null;
+  }
+
+  static String getContentTypeValue (Map<String, Collection<String>> headers) {
+    // template's headers map is case-insensitive, so try the direct lookup first
+    val contentTypeValue = getFirstValue(headers.get(CONTENT_TYPE_HEADER));
+    if (contentTypeValue != null) {
+      return contentTypeValue;
+    }
     for (val entry : headers.entrySet()) {
       if (!entry.getKey().equalsIgnoreCase(CONTENT_TYPE_HEADER)) {
         continue;
       }
-      for (val contentTypeValue : entry.getValue()) {
-        if (contentTypeValue == null) {
-          continue;
-        }
-        return contentTypeValue;
+      val value = getFirstValue(entry.getValue());
+      if (value != null) {
+        return value;
       }
     }
     return null;
   }
 
-  private Charset getCharset (String contentTypeValue) {
-    val matcher = CHARSET_PATTERN.matcher(contentTypeValue);
-    return matcher.find()
-           ? Charset.forName(matcher.group(1))
-           : UTF_8;
+  @SuppressWarnings("PMD.AvoidBranchingStatementAsLastInLoop")
+  private static String getFirstValue (Collection<String> values) {
+    if (values == null) {
+      return null;
+    }
+    for (val value : values) {
+      if (value == null) {
+        continue;
+      }
+      return value;
+    }
+    return null;
   }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.PojoUtil.getProperties;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import feign.form.util.PojoProperty;
+
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Flattens the nested POJOs, maps and collections of them to the single-level form
+ * (see {@link FlatteningStyle}), so the leaf values are written by the regular writers.
+ * <p>
+ * The keys are planned once: for every root key the flattener caches a tree of the nested keys
+ * (per POJO class - the properties' keys, per collection - the elements' keys), so the repeated encoding
+ * of the same DTO graph builds no key strings at all (and the urlencoded keys are percent-encoded once,
+ * see {@link feign.form.util.PercentEncoder}). Only the keys, which come from the maps' keys, are built every time.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class FormFlattener {
+
+  private static final int MAX_ROOT_KEYS = 1024;
+
+  FlatteningStyle style;
+
+  Leaves leaves;
+
+  ConcurrentMap<String, KeyNode> roots;
+
+  FormFlattener (FlatteningStyle style, Leaves leaves) {
+    this.style = style;
+    this.leaves = leaves;
+    roots = new ConcurrentHashMap<String, KeyNode>();
+  }
+
+  /**
+   * Flattens the form data. The root {@code null} values are kept, the nested ones are skipped.
+   *
+   * @param data form data.
+   *
+   * @return flat form data.
+   */
+  Map<String, Object> flatten (Map<String, Object> data) {
+    Map<String, Object> result = new LinkedHashMap<String, Object>(data.size() * 2);
+    for (Entry<String, Object> entry : data.entrySet()) {
+      if (entry == null || entry.getKey() == null) {
+        continue;
+      }
+      if (entry.getValue() == null) {
+        result.put(entry.getKey(), null);
+        continue;
+      }
+      flatten(getRoot(entry.getKey()), entry.getValue(), result);
+    }
+    return result;
+  }
+
+  private void flatten (KeyNode node, Object value, Map<String, Object> result) {
+    if (value == null) {
+      return;
+    }
+    if (value instanceof Map) {
+      for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (entry.getKey() != null) {
+          flatten(node.getEntry(entry.getKey()), entry.getValue(), result);
+        }
+      }
+    } else if (value instanceof Object[] && hasNested(Arrays.asList((Object[]) value))) {
+      flattenElements(node, Arrays.asList((Object[]) value), result);
+    } else if (value instanceof Iterable && hasNested((Iterable<?>) value)) {
+      flattenElements(node, (Iterable<?>) value, result);
+    } else if (leaves.isLeaf(value)) {
+      result.put(node.key, value);
+    } else {
+      List<PojoProperty> properties = getProperties(value.getClass());
+      KeyNode[] nodes = node.getProperties(value.getClass(), properties);
+      for (int i = 0; i < nodes.length; i++) {
+        flatten(nodes[i], properties.get(i).getValue(value), result);
+      }
+    }
+  }
+
+  private void flattenElements (KeyNode node, Iterable<?> elements, Map<String, Object> result) {
+    int index = 0;
+    for (Object element : elements) {
+      flatten(node.getElement(index), element, result);
+      index++;
+    }
+  }
+
+  private boolean hasNested (Iterable<?> elements) {
+    for (Object element : elements) {
+      if (element != null) {
+        return element instanceof Map || !leaves.isLeaf(element);
+      }
+    }
+    return false;
+  }
+
+  private KeyNode getRoot (String key) {
+    val root = roots.get(key);
+    if (root != null) {
+      return root;
+    }
+    val created = new KeyNode(style, key);
+    if (roots.size() >= MAX_ROOT_KEYS) {
+      return created;
+    }
+    val previous = roots.putIfAbsent(key, created);
+    return previous == null
+           ? created
+           : previous;
+  }
+
+  /**
+   * Tells, which values are written by the regular writers as is.
+   */
+  interface Leaves {
+
+    /**
+     * Tells if the value is a leaf (a scalar, a file, etc.), but not a POJO to flatten.
+     * The maps and collections are checked before.
+     *
+     * @param value not {@code null} value.
+     *
+     * @return {@code true} if the value is not flattened.
+     */
+    boolean isLeaf (Object value);
+  }
+
+  /**
+   * The key and the cached keys of its nested values.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class KeyNode {
+
+    static final int MAX_CACHED_ELEMENTS = 256;
+
+    static final KeyNode[] NO_NODES = new KeyNode[0];
+
+    FlatteningStyle style;
+
+    String key;
+
+    ConcurrentMap<Class<?>, KeyNode[]> properties;
+
+    AtomicReference<KeyNode[]> elements;
+
+    KeyNode (FlatteningStyle style, String key) {
+      this.style = style;
+      this.key = key;
+      properties = new ConcurrentHashMap<Class<?>, KeyNode[]>(4);
+      elements = new AtomicReference<KeyNode[]>(NO_NODES);
+    }
+
+    KeyNode[] getProperties (Class<?> type, List<PojoProperty> list) {
+      val nodes = properties.get(type);
+      if (nodes != null) {
+        return nodes;
+      }
+      val created = new KeyNode[list.size()];
+      for (int i = 0; i < created.length; i++) {
+        created[i] = createProperty(list.get(i).getName());
+      }
+      val previous = properties.putIfAbsent(type, created);
+      return previous == null
+             ? created
+             : previous;
+    }
+
+    KeyNode getElement (int index) {
+      KeyNode[] current = elements.get();
+      while (index < MAX_CACHED_ELEMENTS && index >= current.length) {
+        elements.compareAndSet(current, grow(current, index));
+        current = elements.get();
+      }
+      return index < current.length
+             ? current[index]
+             : createElement(index);
+    }
+
+    private KeyNode[] grow (KeyNode[] current, int index) {
+      val length = Math.min(Math.max(index + 1, current.length * 2), MAX_CACHED_ELEMENTS);
+      val result = Arrays.copyOf(current, length);
+      for (int i = current.length; i < length; i++) {
+        result[i] = createElement(i);
+      }
+      return result;
+    }
+
+    KeyNode getEntry (Object entryKey) {
+      return createProperty(entryKey.toString());
+    }
+
+    private KeyNode createProperty (String name) {
+      return new KeyNode(style, style.property(key, name));
+    }
+
+    private KeyNode createElement (int index) {
+      return new KeyNode(style, style.element(key, index));
+    }
+  }
+}
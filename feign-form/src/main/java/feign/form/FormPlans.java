@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import feign.Contract;
+import feign.MethodMetadata;
+import feign.RequestTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * The encoder's compiled {@link MethodPlan}s.
+ * <p>
+ * Feign doesn't pass the method's metadata to the encoder, so the plans are keyed by
+ * the unresolved HTTP method, URL and {@code Content-Type} of the method's template, which
+ * the encoder gets as is, and the template itself is never changed. There is one plan per key:
+ * a rebuilt client replaces its methods' plans, and the methods with the same key share one.
+ * The latter is safe, because a plan only depends on the {@code Content-Type}.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class FormPlans {
+
+  Map<ContentType, ContentProcessor> processors;
+
+  ConcurrentMap<PlanKey, MethodPlan> plans = new ConcurrentHashMap<PlanKey, MethodPlan>();
+
+  FormPlans (Map<ContentType, ContentProcessor> processors) {
+    this.processors = processors;
+  }
+
+  Contract decorate (Contract delegate) {
+    return new PlanningContract(delegate, this);
+  }
+
+  @Nullable
+  MethodPlan find (RequestTemplate template, @Nullable String contentTypeValue) {
+    if (contentTypeValue == null || plans.isEmpty()) {
+      return null;
+    }
+    return plans.get(new PlanKey(template.method(), template.url(), contentTypeValue));
+  }
+
+  void compile (List<MethodMetadata> metadatas) {
+    for (val metadata : metadatas) {
+      compile(metadata);
+    }
+  }
+
+  private void compile (MethodMetadata metadata) {
+    if (metadata.bodyIndex() != null || metadata.formParams().isEmpty()) {
+      return;
+    }
+    val template = metadata.template();
+    val contentTypeValue = FormEncoder.getContentTypeValue(template.headers());
+    // the expressions are resolved per call
+    if (contentTypeValue == null || contentTypeValue.indexOf('{') >= 0) {
+      return;
+    }
+    ParsedContentType contentType = ParsedContentType.of(contentTypeValue);
+    val processor = processors.get(contentType.getContentType());
+    val charset = getCharset(contentType);
+    if (processor == null || charset == null) {
+      return;
+    }
+
+    plans.put(new PlanKey(template.method(), template.url(), contentTypeValue), new MethodPlan(processor, charset));
+  }
+
+  @Nullable
+  private static Charset getCharset (ParsedContentType contentType) {
+    try {
+      return contentType.getCharset();
+    } catch (IllegalArgumentException ex) {
+      // the unsupported charset fails every call of the method, as usual
+      return null;
+    }
+  }
+
+  /**
+   * The plan's key, its parts are compared as is, without concatenating them.
+   */
+  @Value
+  private static class PlanKey {
+
+    String method;
+
+    String url;
+
+    String contentTypeValue;
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class PlanningContract implements Contract {
+
+    Contract delegate;
+
+    FormPlans plans;
+
+    @Override
+    public List<MethodMetadata> parseAndValidatateMetadata (Class<?> targetType) {
+      val result = delegate.parseAndValidatateMetadata(targetType);
+      plans.compile(result);
+      return result;
+    }
+  }
+}
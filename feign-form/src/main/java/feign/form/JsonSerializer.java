@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming JSON serializer of the multipart parts (see {@link MultipartFormContentProcessor#setJsonSerializerFactory(Factory)}).
+ * The value is written right into the body, without the intermediate strings or arrays.
+ * <p>
+ * For example, with Jackson:
+ * <pre>
+ * processor.setJsonSerializerFactory(new JsonSerializer.Factory() {
+ *
+ *   public JsonSerializer create (Class&lt;?&gt; type) {
+ *     final ObjectWriter writer = mapper.writerFor(type);
+ *     return new JsonSerializer() {
+ *
+ *       public void serialize (Object value, OutputStream outputStream) throws IOException {
+ *         writer.writeValue(outputStream, value);
+ *       }
+ *     };
+ *   }
+ * });
+ * </pre>
+ *
+ * @author Artem Labazin
+ */
+public interface JsonSerializer {
+
+  /**
+   * Writes the value as a JSON document. The stream may be closed, it doesn't close the body.
+   *
+   * @param value        part's value.
+   * @param outputStream destination stream.
+   *
+   * @throws IOException in case of serialization or write errors.
+   */
+  void serialize (Object value, OutputStream outputStream) throws IOException;
+
+  /**
+   * Creates the serializers. A serializer is created once per value class and is reused after that,
+   * so it must be thread-safe.
+   */
+  interface Factory {
+
+    /**
+     * Creates the serializer of the class's instances.
+     *
+     * @param type value class.
+     *
+     * @return class's serializer.
+     */
+    JsonSerializer create (Class<?> type);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PACKAGE;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+
+import feign.MethodMetadata;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The form encoding of a client's method, compiled once from its {@link MethodMetadata}:
+ * the processor and the charset are resolved from the method's {@code Content-Type},
+ * so each call neither parses the header nor checks the body type.
+ * <p>
+ * The form data is passed to the processor as is. The writers are not chosen in advance,
+ * because {@link feign.form.multipart.WriterDispatcher} caches them per value class anyway.
+ * The parts' header fragments are also encoded only once per charset.
+ *
+ * @author Artem Labazin
+ */
+@Getter
+@RequiredArgsConstructor(access = PACKAGE)
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class MethodPlan {
+
+  ContentProcessor processor;
+
+  Charset charset;
+}
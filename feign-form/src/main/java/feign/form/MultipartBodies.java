@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.rmi.UnexpectedException;
+import java.util.Map;
+
+import feign.codec.EncodeException;
+import feign.form.multipart.DirectBody;
+import feign.form.multipart.Output;
+import feign.form.multipart.SegmentedBody;
+import feign.form.multipart.SpillingBody;
+import feign.form.multipart.Writer;
+import feign.form.util.MemoryBudget;
+
+/**
+ * Encodes the multipart bodies into the outputs of the {@link MultipartFormContentProcessor}'s modes
+ * and releases the bodies, which are failed to encode.
+ *
+ * @author Artem Labazin
+ */
+final class MultipartBodies {
+
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /**
+   * Creates in-memory output of the exact size, if it is known and fits an array.
+   *
+   * @param charset request charset.
+   * @param length  expected body length, or {@code -1} if it is unknown.
+   *
+   * @return in-memory output.
+   */
+  static Output createOutput (Charset charset, long length) {
+    return length >= 0 && length <= MAX_ARRAY_SIZE
+           ? new Output(charset, (int) length)
+           : new Output(charset);
+  }
+
+  /**
+   * Creates in-memory output for the body. If the body length is not known yet, the output is sized
+   * by the sizing pass (see {@link Output#sizing(Charset)}), which doesn't serialize the expensive parts:
+   * the buffer is allocated once, unless such parts are present.
+   *
+   * @param processor multipart processor.
+   * @param charset   request charset.
+   * @param boundary  data boundary.
+   * @param data      form data.
+   * @param length    body length, or {@code -1} if it is unknown.
+   *
+   * @return in-memory output.
+   */
+  static Output createOutput (MultipartFormContentProcessor processor, Charset charset,
+                              String boundary, Map<String, Object> data, long length
+  ) {
+    if (length >= 0) {
+      return createOutput(charset, length);
+    }
+    Output sizing = Output.sizing(charset);
+    try {
+      processor.write(sizing, boundary, data);
+    } finally {
+      close(sizing);
+    }
+    return createOutput(sizing);
+  }
+
+  /**
+   * Creates in-memory output for the part, sized the same way as the body's one.
+   *
+   * @param writer   part's writer.
+   * @param charset  request charset.
+   * @param boundary data boundary.
+   * @param key      part's name.
+   * @param value    part's value.
+   *
+   * @return in-memory output.
+   */
+  static Output createPartOutput (Writer writer, Charset charset, String boundary, String key, Object value) {
+    Output sizing = Output.sizing(charset);
+    try {
+      writer.write(sizing, boundary, key, value);
+    } finally {
+      close(sizing);
+    }
+    return createOutput(sizing);
+  }
+
+  /**
+   * Tells if the body must be encoded off-heap.
+   *
+   * @param length           body length, or {@code -1} if it is unknown.
+   * @param offHeapThreshold minimal off-heap body size in bytes, {@link Long#MAX_VALUE} turns the mode off.
+   *
+   * @return {@code true} if the body is encoded off-heap.
+   */
+  static boolean isOffHeap (long length, long offHeapThreshold) {
+    // a body of unknown length could be of any size
+    return length >= offHeapThreshold || length < 0 && offHeapThreshold < Long.MAX_VALUE;
+  }
+
+  /**
+   * Closes the output.
+   *
+   * @param output output to close.
+   *
+   * @throws EncodeException in case of closing errors.
+   */
+  static void close (Output output) {
+    try {
+      output.close();
+    } catch (IOException ex) {
+      throw new EncodeException("Output closing error", ex);
+    }
+  }
+
+  private static Output createOutput (Output sizing) {
+    long length = sizing.getCount();
+    if (length >= 0) {
+      return createOutput(sizing.getCharset(), length);
+    }
+    // the known parts' size is the lower bound, the buffer grows only for the expensive ones
+    long known = sizing.getCountedBytes();
+    return known <= MAX_ARRAY_SIZE
+           ? new Output(sizing.getCharset(), (int) known)
+           : new Output(sizing.getCharset());
+  }
+
+  static DirectBody writeOffHeap (MultipartFormContentProcessor processor, Charset charset,
+                                  String boundary, Map<String, Object> data
+  ) {
+    Output output = Output.direct(charset);
+    boolean written = false;
+    try {
+      // the parallel mode would hold every part on the heap
+      processor.write(output, boundary, data);
+      written = true;
+    } finally {
+      close(output);
+      if (!written) {
+        output.toDirectBody().release();
+      }
+    }
+    return output.toDirectBody();
+  }
+
+  static SegmentedBody writeSegmented (MultipartFormContentProcessor processor, Charset charset,
+                                       String boundary, Map<String, Object> data
+  ) {
+    Output output = Output.segmented(charset);
+    try {
+      processor.writeParts(output, boundary, data);
+    } finally {
+      close(output);
+    }
+    return output.toSegmentedBody();
+  }
+
+  static SpillingBody writeSpilling (MultipartFormContentProcessor processor, Charset charset, String boundary,
+                                     Map<String, Object> data, long spillThreshold, long length
+  ) {
+    SpillingBody body = new SpillingBody(spillThreshold, MemoryBudget.SHARED, length);
+    Output output = new Output(body, charset);
+    boolean written = false;
+    try {
+      // the parallel mode would hold every part on the heap, regardless of the memory budget
+      processor.write(output, boundary, data);
+      written = true;
+    } finally {
+      close(output);
+      if (!written) {
+        body.release();
+      }
+    }
+    return body;
+  }
+
+  private MultipartBodies () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+}
@@ -17,44 +17,103 @@
 package feign.form;
 
 import static feign.form.ContentType.MULTIPART;
+import static feign.form.MultipartBodies.close;
+import static feign.form.MultipartBodies.createOutput;
+import static feign.form.MultipartBodies.createPartOutput;
+import static feign.form.MultipartBodies.isOffHeap;
+import static feign.form.MultipartBodies.writeOffHeap;
+import static feign.form.MultipartBodies.writeSegmented;
+import static feign.form.MultipartBodies.writeSpilling;
 import static lombok.AccessLevel.PRIVATE;
 
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import feign.Request;
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
 import feign.form.multipart.ByteArrayWriter;
+import feign.form.multipart.ByteBufferWriter;
+import feign.form.multipart.CollectionWriter;
+import feign.form.multipart.ContentSourceWriter;
 import feign.form.multipart.DelegateWriter;
+import feign.form.multipart.EncodedPartsWriter;
 import feign.form.multipart.FormDataWriter;
-import feign.form.multipart.ManyFilesWriter;
-import feign.form.multipart.ManyParametersWriter;
+import feign.form.multipart.JsonWriter;
 import feign.form.multipart.Output;
 import feign.form.multipart.PojoWriter;
+import feign.form.multipart.PrimitiveArrayWriter;
+import feign.form.multipart.ScalarWriter;
 import feign.form.multipart.SingleFileWriter;
 import feign.form.multipart.SingleParameterWriter;
 import feign.form.multipart.Writer;
+import feign.form.multipart.WriterDispatcher;
 
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.val;
 
 /**
+ * Multipart form content processor.
+ * <p>
+ * By default, the whole request body is built in memory. In <b>streaming</b> mode
+ * (see {@link #setStreaming(boolean)}) the parts are written lazily, right into
+ * the connection's output stream, while the request is sent by {@link StreamingClient}.
+ * <p>
+ * The body length is computed without encoding it (see {@link #getContentLength(Charset, String, Map)}),
+ * so the streaming body is sent with {@code Content-Length}. The counting pass runs the writers,
+ * so it is done before the encoding only if the mode depends on the length: the off-heap threshold is set,
+ * or the body could spill. Otherwise, the in-memory body is sized by a cheaper pass, which doesn't serialize
+ * the expensive parts (JSON, delegate encoder's ones), so the body buffer is allocated once, unless such
+ * parts are present (see {@link Output#sizing(Charset)}).
+ * <p>
+ * The bodies, which are not smaller than the <b>off-heap threshold</b> (see {@link #setOffHeapThreshold(long)}),
+ * are encoded into pooled direct buffers instead of a heap array, and are sent by {@link StreamingClient} too.
+ * In <b>segmented</b> mode (see {@link #setSegmented(boolean)}) the body references the parts' arrays
+ * instead of copying them. In <b>spilling</b> mode (see {@link #setSpillThreshold(long)}) the body
+ * is buffered in memory up to a threshold and is written to a temporary file after that.
+ * <p>
+ * In <b>parallel</b> mode (see {@link #setParallelExecutor(Executor)}) the parts are prepared
+ * concurrently and are stitched together in the original order.
  *
  * @author Artem Labazin
  */
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class MultipartFormContentProcessor implements ContentProcessor {
 
-  Deque<Writer> writers;
+  WriterDispatcher writers;
 
-  Writer defaultPerocessor;
+  ValueFormatters valueFormatters;
+
+  Writer delegateWriter;
+
+  FallbackWriter defaultPerocessor;
+
+  @NonFinal
+  boolean streaming;
+
+  @NonFinal
+  boolean segmented;
+
+  @NonFinal
+  long offHeapThreshold = Long.MAX_VALUE;
+
+  @NonFinal
+  long spillThreshold = -1;
+
+  @NonFinal
+  Executor parallelExecutor;
+
+  @NonFinal
+  FormFlattener flattener;
 
   /**
    * Constructor with specific delegate encoder.
@@ -62,58 +121,182 @@ public class MultipartFormContentProcessor implements ContentProcessor {
    * @param delegate specific delegate encoder for cases, when this processor couldn't handle request parameter.
    */
   public MultipartFormContentProcessor (Encoder delegate) {
-    writers = new LinkedList<Writer>();
-    addWriter(new ByteArrayWriter());
-    addWriter(new FormDataWriter());
-    addWriter(new SingleFileWriter());
-    addWriter(new ManyFilesWriter());
-    addWriter(new SingleParameterWriter());
-    addWriter(new ManyParametersWriter());
-    addWriter(new PojoWriter(writers));
+    valueFormatters = new ValueFormatters();
+    writers = new WriterDispatcher(
+        new EncodedPartsWriter(),
+        new ByteArrayWriter(),
+        new ByteBufferWriter(),
+        new FormDataWriter(),
+        new SingleFileWriter(),
+        new ContentSourceWriter(),
+        new SingleParameterWriter(),
+        new ScalarWriter(valueFormatters),
+        new PrimitiveArrayWriter()
+    );
+    delegateWriter = new DelegateWriter(delegate);
+    defaultPerocessor = new FallbackWriter(delegateWriter);
 
-    defaultPerocessor = new DelegateWriter(delegate);
+    addWriter(new CollectionWriter(writers, defaultPerocessor));
+    addWriter(new PojoWriter(writers));
   }
 
   @Override
   public void process (RequestTemplate template, Charset charset, Map<String, Object> data) throws EncodeException {
-    val boundary = Long.toHexString(System.currentTimeMillis());
-    val output = new Output(charset);
+    val boundary = prepareHeaders(template, charset);
+    template.body(createBody(charset, boundary, data));
+  }
 
-    for (val entry : data.entrySet()) {
-      if (entry == null || entry.getKey() == null || entry.getValue() == null) {
-        continue;
+  /**
+   * Asynchronous version of {@link #process(RequestTemplate, Charset, Map)}. The template's headers
+   * are set right away, but the body (including the parts' I/O) is encoded by the executor.
+   * The template is not touched after this method returns, so the caller must set the body itself,
+   * when it is ready: {@code template.body(future.get())}.
+   *
+   * @param template request template.
+   * @param charset  request charset.
+   * @param data     form data.
+   * @param executor executor, which encodes the body.
+   *
+   * @return the future body.
+   */
+  public EncodingFuture processAsync (RequestTemplate template, final Charset charset,
+                                      final Map<String, Object> data, Executor executor
+  ) {
+    val boundary = prepareHeaders(template, charset);
+    val task = new EncodingFuture(new Callable<Request.Body>() {
+
+      @Override
+      public Request.Body call () {
+        return createBody(charset, boundary, data);
       }
-      val writer = findApplicableWriter(entry.getValue());
-      writer.write(output, boundary, entry.getKey(), entry.getValue());
-    }
+    });
+    executor.execute(task);
+    return task;
+  }
 
-    output.write("--").write(boundary).write("--").write(CRLF);
+  @Override
+  public ContentType getSupportedContentType () {
+    return MULTIPART;
+  }
 
-    val contentTypeHeaderValue = new StringBuilder()
-        .append(getSupportedContentType().getHeader())
-        .append("; charset=").append(charset.name())
-        .append("; boundary=").append(boundary)
-        .toString();
+  /**
+   * Turns on/off the streaming mode. In streaming mode the request body is not
+   * buffered in memory, the parts are written straight to the connection by
+   * {@link StreamingClient} (it must be set as Feign's client).
+   *
+   * @param streaming {@code true} for streaming mode, {@code false} for in-memory body (default).
+   */
+  public final void setStreaming (boolean streaming) {
+    this.streaming = streaming;
+  }
 
-    template.header(CONTENT_TYPE_HEADER, Collections.<String>emptyList()); // reset header
-    template.header(CONTENT_TYPE_HEADER, contentTypeHeaderValue);
+  /**
+   * Tells if the streaming mode is turned on.
+   *
+   * @return {@code true} if the request body is streamed.
+   */
+  public final boolean isStreaming () {
+    return streaming;
+  }
+
+  /**
+   * Turns on/off the segmented mode. In segmented mode the body is a list of segments
+   * (see {@link feign.form.multipart.SegmentedBody}), which references the big {@code byte[]} parts
+   * instead of copying them, so the parts must not be modified until the client's method returns
+   * (the body is released right after it is sent, but the retries re-read the parts).
+   * Such requests are sent by {@link StreamingClient} (it must be set as Feign's client).
+   *
+   * @param segmented {@code true} for segmented mode, {@code false} for a single array body (default).
+   */
+  public final void setSegmented (boolean segmented) {
+    this.segmented = segmented;
+  }
 
-    // Feign's clients try to determine binary/string content by charset presence
-    // so, I set it to null (in spite of availability charset) for backward compatibility.
-    val bytes = output.toByteArray();
-    val body = Request.Body.encoded(bytes, null);
-    template.body(body);
+  /**
+   * Sets the minimal size of the bodies, which are encoded off-heap, into the pooled direct buffers
+   * (see {@link feign.form.multipart.DirectBody}), so the big bodies never touch the Java heap. Such requests
+   * are sent by {@link StreamingClient} (it must be set as Feign's client). By default, the off-heap mode is off.
+   *
+   * @param offHeapThreshold minimal off-heap body size in bytes, {@link Long#MAX_VALUE} turns the mode off.
+   */
+  public final void setOffHeapThreshold (long offHeapThreshold) {
+    this.offHeapThreshold = offHeapThreshold;
+  }
 
-    try {
-      output.close();
-    } catch (IOException ex) {
-      throw new EncodeException("Output closing error", ex);
-    }
+  /**
+   * Sets the maximum number of bytes, which the body may hold in memory, and turns on the spilling mode.
+   * The bigger bodies are written to a temporary file (see {@link feign.form.multipart.SpillingBody}),
+   * as well as the bodies, which don't fit the process-wide {@link feign.form.util.MemoryBudget#SHARED} budget.
+   * Such requests are sent by {@link StreamingClient} (it must be set as Feign's client).
+   *
+   * @param spillThreshold maximum in-memory body size in bytes, a negative value turns the mode off (default).
+   */
+  public final void setSpillThreshold (long spillThreshold) {
+    this.spillThreshold = spillThreshold;
   }
 
-  @Override
-  public ContentType getSupportedContentType () {
-    return MULTIPART;
+  /**
+   * Sets the executor, which prepares the parts concurrently (any {@link Executor} fits, for example,
+   * a {@code ForkJoinPool} or a virtual threads executor). Each part (its headers and content) is encoded
+   * into a separate in-memory buffer, the buffers are written in the original order. The thread, which
+   * waits for the part, encodes it itself, if the executor hasn't started it yet.
+   * <p>
+   * The mode speeds up the forms with many I/O bound parts (files, etc.), but it holds all the parts in memory
+   * at once, so it is not applied in streaming mode and to the off-heap and spilling bodies.
+   *
+   * @param parallelExecutor parts executor, {@code null} turns the mode off (default).
+   */
+  public final void setParallelExecutor (Executor parallelExecutor) {
+    this.parallelExecutor = parallelExecutor;
+  }
+
+  /**
+   * Sets the way the nested POJOs, maps and collections of them are flattened to the parts' names,
+   * like {@code a.b.c} or {@code a[0][b]}. The keys are planned once per root key and POJO class.
+   *
+   * @param flatteningStyle flattening style, {@link FlatteningStyle#NONE} turns the flattening off (default).
+   */
+  public final void setFlatteningStyle (FlatteningStyle flatteningStyle) {
+    flattener = flatteningStyle == FlatteningStyle.NONE
+                ? null
+                : new FormFlattener(flatteningStyle, new WriterLeaves(writers));
+  }
+
+  /**
+   * Returns the formatters of the scalar values (enums, dates, etc.), which are written as {@code text/plain} parts.
+   * The formatters could be replaced or added (see {@link ValueFormatters#register(Class, ValueFormatter)}).
+   *
+   * @return scalar values formatters.
+   */
+  public final ValueFormatters getValueFormatters () {
+    return valueFormatters;
+  }
+
+  /**
+   * Sets the factory of the JSON serializers, which write the values, unsupported by the other writers
+   * (maps, beans from {@code java.*} packages, etc.), as {@code application/json} parts (see {@link JsonWriter}).
+   * The values are serialized straight into the body. By default, such values are encoded by the delegate
+   * encoder into a temporary request and are sent as {@code text/plain} parts.
+   *
+   * @param jsonSerializerFactory JSON serializers factory, {@code null} turns the delegate encoder back.
+   */
+  public final void setJsonSerializerFactory (JsonSerializer.Factory jsonSerializerFactory) {
+    defaultPerocessor.setDelegate(jsonSerializerFactory == null
+                                  ? delegateWriter
+                                  : new JsonWriter(jsonSerializerFactory));
+  }
+
+  /**
+   * Encodes the static parts of the form once, so they are shared by all the form's requests
+   * (see {@link PreparedForm}).
+   *
+   * @param charset    form's charset.
+   * @param staticData the parts, which are the same for every request.
+   *
+   * @return prepared form.
+   */
+  public final PreparedForm prepare (Charset charset, Map<String, Object> staticData) {
+    return new PreparedForm(this, charset, staticData);
   }
 
   /**
@@ -122,7 +305,7 @@ public class MultipartFormContentProcessor implements ContentProcessor {
    * @param writer additional writer.
    */
   public final void addWriter (Writer writer) {
-    writers.add(writer);
+    writers.addLast(writer);
   }
 
   /**
@@ -151,15 +334,213 @@ public class MultipartFormContentProcessor implements ContentProcessor {
    * @return writers collection.
    */
   public final Collection<Writer> getWriters () {
-    return Collections.unmodifiableCollection(writers);
+    return writers.getWriters();
   }
 
-  private Writer findApplicableWriter (Object value) {
-    for (val writer : writers) {
-      if (writer.isApplicable(value)) {
-        return writer;
+  /**
+   * Computes the exact length of the encoded body, without encoding it. The parts, which size
+   * is known up front ({@code byte[]}, files, etc.), are not read.
+   *
+   * @param charset  request charset.
+   * @param boundary data boundary.
+   * @param data     form data.
+   *
+   * @return the body length in bytes, or {@code -1} if some part's length is unknown (for example, a stream).
+   */
+  public long getContentLength (Charset charset, String boundary, Map<String, Object> data) {
+    Output output = Output.counting(charset);
+    try {
+      write(output, boundary, data);
+      return output.getCount();
+    } finally {
+      close(output);
+    }
+  }
+
+  /**
+   * Writes all form's parts and the closing boundary to the output.
+   *
+   * @param output    output writer.
+   * @param boundary  data boundary.
+   * @param data      form data.
+   */
+  void write (Output output, String boundary, Map<String, Object> data) {
+    writeEachPart(output, boundary, data);
+    output.writeClosingBoundary(boundary);
+  }
+
+  /**
+   * Encodes the form's parts without the closing boundary into a byte array (see {@link PreparedForm}).
+   *
+   * @param charset  request charset.
+   * @param boundary data boundary.
+   * @param formData form data.
+   *
+   * @return encoded parts.
+   */
+  byte[] encodeParts (Charset charset, String boundary, Map<String, Object> formData) {
+    Map<String, Object> data = flatten(formData);
+    Output output = new Output(charset);
+    try {
+      writeEachPart(output, boundary, data);
+      return output.toByteArray();
+    } finally {
+      close(output);
+    }
+  }
+
+  /**
+   * Encodes a single part (its boundary, headers and content) into a byte array.
+   *
+   * @param charset  request charset.
+   * @param boundary data boundary.
+   * @param key      part's name.
+   * @param value    part's value.
+   *
+   * @return encoded part.
+   */
+  byte[] preparePart (Charset charset, String boundary, String key, Object value) {
+    val writer = findApplicableWriter(value);
+    Output output = createPartOutput(writer, charset, boundary, key, value);
+    try {
+      writer.write(output, boundary, key, value);
+      return output.toByteArray();
+    } finally {
+      close(output);
+    }
+  }
+
+  /**
+   * Writes all form's parts and the closing boundary to the output, concurrently in parallel mode.
+   *
+   * @param output    output writer.
+   * @param boundary  data boundary.
+   * @param data      form data.
+   */
+  void writeParts (Output output, String boundary, Map<String, Object> data) {
+    if (parallelExecutor == null) {
+      write(output, boundary, data);
+    } else {
+      new ParallelPartsWriter(this, parallelExecutor).write(output, boundary, data);
+    }
+  }
+
+  private String prepareHeaders (RequestTemplate template, Charset charset) {
+    String boundary = Long.toHexString(System.currentTimeMillis());
+
+    template.header(CONTENT_TYPE_HEADER, Collections.<String>emptyList()); // reset header
+    template.header(CONTENT_TYPE_HEADER, new StringBuilder()
+        .append(getSupportedContentType().getHeader())
+        .append("; charset=").append(charset.name())
+        .append("; boundary=").append(boundary)
+        .toString());
+    return boundary;
+  }
+
+  /**
+   * Encodes the form's body according to the processor's mode.
+   *
+   * @param charset  request charset.
+   * @param boundary data boundary.
+   * @param formData form data.
+   *
+   * @return request body.
+   */
+  Request.Body createBody (Charset charset, String boundary, Map<String, Object> formData) {
+    Map<String, Object> data = flatten(formData);
+    if (streaming) {
+      return register(new StreamingBody(this, charset, boundary, data));
+    }
+
+    // the counting pass runs the writers, so it is skipped, when the mode doesn't depend on the length
+    long length = offHeapThreshold < Long.MAX_VALUE || !segmented && spillThreshold >= 0
+                  ? getContentLength(charset, boundary, data)
+                  : -1;
+    if (isOffHeap(length, offHeapThreshold)) {
+      return register(new StreamingBody(this, charset, boundary, data, writeOffHeap(this, charset, boundary, data)));
+    }
+    if (segmented) {
+      return register(new StreamingBody(this, charset, boundary, data, writeSegmented(this, charset, boundary, data)));
+    }
+    if (spillThreshold >= 0) {
+      val spillingBody = writeSpilling(this, charset, boundary, data, spillThreshold, length);
+      return register(new StreamingBody(this, charset, boundary, data, spillingBody));
+    }
+
+    Output output = createOutput(this, charset, boundary, data, length);
+    try {
+      writeParts(output, boundary, data);
+
+      // Feign's clients try to determine binary/string content by charset presence
+      // so, I set it to null (in spite of availability charset) for backward compatibility.
+      val bytes = output.toByteArray();
+      return Request.Body.encoded(bytes, null);
+    } finally {
+      close(output);
+    }
+  }
+
+  private Map<String, Object> flatten (Map<String, Object> formData) {
+    return flattener == null
+           ? formData
+           : flattener.flatten(formData);
+  }
+
+  private void writeEachPart (Output output, String boundary, Map<String, Object> data) {
+    for (val entry : data.entrySet()) {
+      if (entry == null || entry.getKey() == null || entry.getValue() == null) {
+        continue;
       }
+      val writer = findApplicableWriter(entry.getValue());
+      writer.write(output, boundary, entry.getKey(), entry.getValue());
+    }
+  }
+
+  private Request.Body register (StreamingBody body) {
+    return Request.Body.encoded(body.register(), null);
+  }
+
+  private Writer findApplicableWriter (Object value) {
+    val writer = writers.find(value);
+    return writer == null
+           ? defaultPerocessor
+           : writer;
+  }
+
+  /**
+   * Values, which are not written by {@link PojoWriter}, are not flattened.
+   */
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class WriterLeaves implements FormFlattener.Leaves {
+
+    WriterDispatcher writers;
+
+    @Override
+    public boolean isLeaf (Object value) {
+      return !(writers.find(value) instanceof PojoWriter);
+    }
+  }
+
+  /**
+   * Writes the values, which are not supported by the other writers, by the current default writer
+   * (the delegate encoder or the JSON serializer).
+   */
+  @AllArgsConstructor
+  @FieldDefaults(level = PRIVATE)
+  private static final class FallbackWriter implements Writer {
+
+    @Setter
+    Writer delegate;
+
+    @Override
+    public void write (Output output, String boundary, String key, Object value) {
+      delegate.write(output, boundary, key, value);
+    }
+
+    @Override
+    public boolean isApplicable (Object value) {
+      return true;
     }
-    return defaultPerocessor;
   }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import feign.codec.EncodeException;
+import feign.form.multipart.Output;
+
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Writes the form's parts, which are prepared concurrently by an executor
+ * (see {@link MultipartFormContentProcessor#setParallelExecutor(Executor)}), in the original order.
+ *
+ * @author Artem Labazin
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class ParallelPartsWriter {
+
+  MultipartFormContentProcessor processor;
+
+  Executor executor;
+
+  /**
+   * Writes all form's parts and the closing boundary to the output.
+   *
+   * @param output   output writer.
+   * @param boundary data boundary.
+   * @param data     form data.
+   */
+  void write (Output output, String boundary, Map<String, Object> data) {
+    List<FutureTask<byte[]>> parts = new ArrayList<FutureTask<byte[]>>(data.size());
+    try {
+      for (val entry : data.entrySet()) {
+        if (entry == null || entry.getKey() == null || entry.getValue() == null) {
+          continue;
+        }
+        FutureTask<byte[]> part = createTask(output.getCharset(), boundary, entry.getKey(), entry.getValue());
+        parts.add(part);
+        executor.execute(part);
+      }
+      for (FutureTask<byte[]> part : parts) {
+        byte[] bytes = getResult(part);
+        output.writeShared(bytes, 0, bytes.length);
+      }
+    } finally {
+      for (FutureTask<byte[]> part : parts) {
+        part.cancel(true);
+      }
+    }
+    output.writeClosingBoundary(boundary);
+  }
+
+  private FutureTask<byte[]> createTask (Charset charset, String boundary, String key, Object value) {
+    return new FutureTask<byte[]>(new PartPreparation(processor, charset, boundary, key, value));
+  }
+
+  private byte[] getResult (FutureTask<byte[]> part) {
+    // runs the part in this thread, if the executor hasn't started it yet
+    part.run();
+    try {
+      return part.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new EncodeException("Part preparation is interrupted", ex);
+    } catch (ExecutionException ex) {
+      val cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new EncodeException("Part preparation error", ex);
+    }
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class PartPreparation implements Callable<byte[]> {
+
+    MultipartFormContentProcessor processor;
+
+    Charset charset;
+
+    String boundary;
+
+    String key;
+
+    Object value;
+
+    @Override
+    public byte[] call () {
+      return processor.preparePart(charset, boundary, key, value);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static lombok.AccessLevel.NONE;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import feign.form.util.LruCache;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Immutable parsed {@code Content-Type} header value.
+ * <p>
+ * The parsed values are cached by the raw header string - clients usually send
+ * the same few header values, so the parsing is done once for each of them.
+ * The cache is bounded, the least recently used values (like the ones with the per-request boundaries) are evicted.
+ *
+ * @author Artem Labazin
+ */
+@Getter
+@RequiredArgsConstructor(access = PRIVATE)
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class ParsedContentType {
+
+  private static final Pattern CHARSET_PATTERN;
+
+  private static final Pattern BOUNDARY_PATTERN;
+
+  private static final int MAX_CACHE_SIZE = 256;
+
+  private static final LruCache<String, ParsedContentType> CACHE;
+
+  private static final ParsedContentType UNDEFINED;
+
+  static {
+    CHARSET_PATTERN = Pattern.compile("(?<=charset=)([\\w\\-]+)");
+    BOUNDARY_PATTERN = Pattern.compile("(?<=boundary=)\"?([^\";,\\s]+)");
+    CACHE = new LruCache<String, ParsedContentType>(MAX_CACHE_SIZE);
+    UNDEFINED = new ParsedContentType(ContentType.UNDEFINED, null, null);
+  }
+
+  ContentType contentType;
+
+  /**
+   * The charset parameter, it is resolved only by {@link #getCharset()}, so the non-form
+   * content types with the charsets, unknown to JVM, are parsed without errors.
+   */
+  @Nullable
+  @Getter(NONE)
+  String charsetName;
+
+  @NonFinal
+  @Getter(NONE)
+  Charset charset;
+
+  @Nullable
+  String boundary;
+
+  /**
+   * Parses {@code Content-Type} header value.
+   *
+   * @param value raw header value, may be {@code null}.
+   *
+   * @return parsed header value, its charset is UTF-8 if it is not specified.
+   */
+  public static ParsedContentType of (@Nullable String value) {
+    if (value == null) {
+      return UNDEFINED;
+    }
+
+    val cached = CACHE.get(value);
+    if (cached != null) {
+      return cached;
+    }
+
+    return CACHE.putIfAbsent(value, parse(value));
+  }
+
+  private static ParsedContentType parse (String value) {
+    val charsetMatcher = CHARSET_PATTERN.matcher(value);
+    val charsetName = charsetMatcher.find()
+                      ? charsetMatcher.group(1)
+                      : null;
+
+    val boundaryMatcher = BOUNDARY_PATTERN.matcher(value);
+    val boundary = boundaryMatcher.find()
+                   ? boundaryMatcher.group(1)
+                   : null;
+
+    return new ParsedContentType(ContentType.of(value), charsetName, boundary);
+  }
+
+  /**
+   * Returns the header's charset.
+   *
+   * @return the charset or UTF-8 if it is not specified.
+   *
+   * @throws java.nio.charset.IllegalCharsetNameException if the charset name is illegal.
+   * @throws java.nio.charset.UnsupportedCharsetException if the charset is not supported by JVM.
+   */
+  public Charset getCharset () {
+    Charset result = charset;
+    if (result == null) {
+      result = charsetName == null
+               ? UTF_8
+               : Charset.forName(charsetName);
+      charset = result;
+    }
+    return result;
+  }
+}
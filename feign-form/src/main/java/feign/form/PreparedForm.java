@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PACKAGE;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.form.multipart.EncodedParts;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Multipart form, which static parts (template files, fixed fields, etc.) are encoded once,
+ * when the form is prepared (see {@link MultipartFormContentProcessor#prepare(Charset, Map)}),
+ * and each request adds only its variable parts.
+ * <p>
+ * All the form's requests have the same boundary, so the static parts' bytes are shared by them:
+ * the segmented and the streaming bodies (see {@link MultipartFormContentProcessor}) reference
+ * the bytes, and the in-memory bodies copy them once, without re-encoding or re-reading the parts.
+ * The static parts go first, the variable ones follow them in the data's order.
+ * <pre>
+ * val form = processor.prepare(UTF_8, staticData);
+ * ...
+ * api.upload(form.bind(variableData));
+ * </pre>
+ * The form is immutable and could be shared between threads.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class PreparedForm {
+
+  private static final String CONTENT_TYPE_HEADER;
+
+  private static final String STATIC_PARTS_KEY;
+
+  static {
+    CONTENT_TYPE_HEADER = "Content-Type";
+    STATIC_PARTS_KEY = "feign-form-static-parts";
+  }
+
+  MultipartFormContentProcessor processor;
+
+  @Getter
+  Charset charset;
+
+  @Getter
+  String boundary;
+
+  String contentType;
+
+  EncodedParts staticParts;
+
+  PreparedForm (MultipartFormContentProcessor processor, Charset charset, Map<String, Object> staticData) {
+    this.processor = processor;
+    this.charset = charset;
+    boundary = UUID.randomUUID().toString().replace("-", "");
+    contentType = new StringBuilder()
+        .append(processor.getSupportedContentType().getHeader())
+        .append("; charset=").append(charset.name())
+        .append("; boundary=").append(boundary)
+        .toString();
+    staticParts = new EncodedParts(boundary, processor.encodeParts(charset, boundary, staticData));
+  }
+
+  /**
+   * Returns the size of the encoded static parts.
+   *
+   * @return static parts' size in bytes.
+   */
+  public int getStaticLength () {
+    return staticParts.getLength();
+  }
+
+  /**
+   * Binds the variable parts of a request, the bound form is encoded by {@link FormEncoder}
+   * as the request body, regardless of the method's {@code Content-Type}.
+   *
+   * @param data the request's variable parts.
+   *
+   * @return bound form.
+   */
+  public Bound bind (Map<String, Object> data) {
+    return new Bound(this, data);
+  }
+
+  /**
+   * Sets the form's {@code Content-Type} header and the body of the static and the variable parts.
+   *
+   * @param template request template.
+   * @param data     the request's variable parts.
+   *
+   * @throws IllegalArgumentException if the data has the reserved {@code feign-form-static-parts} key.
+   */
+  public void encode (RequestTemplate template, Map<String, Object> data) {
+    template.body(processor.createBody(charset, boundary, prepare(template, data)));
+  }
+
+  /**
+   * Asynchronous version of {@link #encode(RequestTemplate, Map)}. The template's header is set right away,
+   * but the body (including the variable parts' I/O) is encoded by the executor, the caller must set it itself
+   * (see {@link FormEncoder#encodeAsync(Object, java.lang.reflect.Type, RequestTemplate, Executor)}).
+   *
+   * @param template request template.
+   * @param data     the request's variable parts.
+   * @param executor executor, which encodes the body.
+   *
+   * @return the future body.
+   *
+   * @throws IllegalArgumentException if the data has the reserved {@code feign-form-static-parts} key.
+   */
+  public EncodingFuture encodeAsync (RequestTemplate template, Map<String, Object> data, Executor executor) {
+    final Map<String, Object> formData = prepare(template, data);
+    val task = new EncodingFuture(new Callable<Request.Body>() {
+
+      @Override
+      public Request.Body call () {
+        return processor.createBody(charset, boundary, formData);
+      }
+    });
+    executor.execute(task);
+    return task;
+  }
+
+  private Map<String, Object> prepare (RequestTemplate template, Map<String, Object> data) {
+    if (data.containsKey(STATIC_PARTS_KEY)) {
+      throw new IllegalArgumentException("The key '" + STATIC_PARTS_KEY + "' is reserved");
+    }
+    val formData = new LinkedHashMap<String, Object>(data.size() * 2 + 2);
+    formData.put(STATIC_PARTS_KEY, staticParts);
+    formData.putAll(data);
+
+    template.header(CONTENT_TYPE_HEADER, Collections.<String>emptyList()); // reset header
+    template.header(CONTENT_TYPE_HEADER, contentType);
+    return formData;
+  }
+
+  /**
+   * The prepared form with the variable parts of a request.
+   */
+  @RequiredArgsConstructor(access = PACKAGE)
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  public static final class Bound {
+
+    PreparedForm form;
+
+    Map<String, Object> data;
+
+    /**
+     * Sets the form's {@code Content-Type} header and body (see {@link PreparedForm#encode(RequestTemplate, Map)}).
+     *
+     * @param template request template.
+     */
+    public void encode (RequestTemplate template) {
+      form.encode(template, data);
+    }
+
+    /**
+     * Sets the form's {@code Content-Type} header and encodes the body by the executor
+     * (see {@link PreparedForm#encodeAsync(RequestTemplate, Map, Executor)}).
+     *
+     * @param template request template.
+     * @param executor executor, which encodes the body.
+     *
+     * @return the future body.
+     */
+    public EncodingFuture encodeAsync (RequestTemplate template, Executor executor) {
+      return form.encodeAsync(template, data, executor);
+    }
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.ContentProcessor.CRLF;
+import static feign.form.util.CharsetUtil.UTF_8;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import feign.Request;
+import feign.form.multipart.EncodedBody;
+import feign.form.multipart.Output;
+import feign.form.util.BufferPool;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Lazily produced multipart request body.
+ * <p>
+ * Feign's {@link Request} holds its body as a byte array, so in streaming mode
+ * {@link MultipartFormContentProcessor} puts a placeholder array into the request
+ * and associates it with this object. {@link StreamingClient} looks the body up by
+ * the placeholder and writes the parts directly to the connection.
+ * <p>
+ * The placeholder is not empty: another client sends it as is, and as it has no multipart boundary,
+ * the server rejects the request instead of silently receiving a form without parts.
+ * The placeholder's text tells what went wrong.
+ * <p>
+ * The body could be written any number of times (for example, on Feign's {@code Retryer} retries)
+ * without buffering it: every attempt uses the same boundary and parts, files and
+ * {@link ContentSource}s are reopened, so the byte layout is reproduced exactly. Only the bodies with one-shot
+ * parts (plain streams and channels) could be written once.
+ * <p>
+ * The off-heap, segmented and spilling bodies (see {@link MultipartFormContentProcessor#setOffHeapThreshold(long)},
+ * {@link MultipartFormContentProcessor#setSegmented(boolean)} and {@link MultipartFormContentProcessor#setSpillThreshold(long)})
+ * are encoded up front into an {@link EncodedBody}. {@link StreamingClient} releases it right after the request
+ * is sent (see {@link #release()}): the pooled buffers, the memory budget and the temporary file are freed and
+ * the shared arrays are not referenced anymore. The retries encode the same parts lazily after that, byte for byte.
+ * The encoded bodies, which are never released explicitly, are released after their requests' placeholders
+ * are garbage collected.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class StreamingBody {
+
+  private static final byte[] PLACEHOLDER;
+
+  private static final Map<byte[], StreamingBody> BODIES;
+
+  private static final ReferenceQueue<byte[]> COLLECTED;
+
+  private static final Set<EncodedBodyReference> ENCODED_BODIES;
+
+  static {
+    PLACEHOLDER = ("feign-form: the multipart body is not sent, the request must be sent by "
+                   + StreamingClient.class.getName() + CRLF).getBytes(UTF_8);
+    // arrays use identity equals/hashCode, so every placeholder is a unique key
+    BODIES = Collections.synchronizedMap(new WeakHashMap<byte[], StreamingBody>());
+    COLLECTED = new ReferenceQueue<byte[]>();
+    ENCODED_BODIES = Collections.newSetFromMap(new ConcurrentHashMap<EncodedBodyReference, Boolean>());
+  }
+
+  MultipartFormContentProcessor processor;
+
+  @Getter
+  Charset charset;
+
+  @Getter
+  String boundary;
+
+  Map<String, Object> data;
+
+  /**
+   * The pre-encoded body, or {@code null} if the body is encoded lazily or the encoded body is released.
+   */
+  @Getter
+  @NonFinal
+  EncodedBody encodedBody;
+
+  @NonFinal
+  EncodedBodyReference encodedBodyReference;
+
+  /**
+   * {@code true} if the parts could be written more than once.
+   */
+  boolean partsRepeatable;
+
+  @NonFinal
+  boolean contentLengthComputed;
+
+  @NonFinal
+  long contentLength;
+
+  @NonFinal
+  boolean written;
+
+  StreamingBody (MultipartFormContentProcessor processor, Charset charset, String boundary, Map<String, Object> data) {
+    this(processor, charset, boundary, data, null);
+  }
+
+  StreamingBody (MultipartFormContentProcessor processor, Charset charset, String boundary,
+                 Map<String, Object> data, EncodedBody encodedBody
+  ) {
+    this.processor = processor;
+    this.charset = charset;
+    this.boundary = boundary;
+    // the copy keeps the parts and their order the same for every attempt,
+    // they are kept for the retries after the encoded body is released
+    this.data = new LinkedHashMap<String, Object>(data);
+    this.encodedBody = encodedBody;
+    partsRepeatable = ContentSources.isRepeatable(data);
+  }
+
+  /**
+   * Returns the streaming body of the request.
+   *
+   * @param request Feign's request.
+   *
+   * @return the request's streaming body or {@code null}, if the body is a regular byte array.
+   */
+  public static StreamingBody of (Request request) {
+    val body = request.requestBody();
+    val placeholder = body == null
+                      ? null
+                      : body.asBytes();
+    return placeholder == null
+           ? null
+           : BODIES.get(placeholder);
+  }
+
+  /**
+   * Writes the whole multipart body to the stream. The stream is flushed, but not closed.
+   *
+   * @param outputStream destination stream.
+   *
+   * @throws IOException in case of write errors or if the body with one-shot parts is written again
+   */
+  public void writeTo (OutputStream outputStream) throws IOException {
+    if (written && !isRepeatable()) {
+      throw new IOException("The body has one-shot parts (InputStream, ReadableByteChannel, etc.) and can't be written again");
+    }
+    written = true;
+    if (encodedBody != null) {
+      encodedBody.writeTo(outputStream);
+      outputStream.flush();
+      return;
+    }
+    val output = new Output(new PooledBufferedOutputStream(outputStream), charset);
+    try {
+      processor.write(output, boundary, data);
+    } finally {
+      // flushes the buffer, but doesn't close the destination stream
+      output.close();
+    }
+  }
+
+  /**
+   * Computes the exact length of the body (see {@link MultipartFormContentProcessor#getContentLength}).
+   * The length is computed once, every attempt must write exactly this number of bytes.
+   *
+   * @return the body length in bytes, or {@code -1} if it is unknown.
+   */
+  public long getContentLength () {
+    if (encodedBody != null) {
+      return encodedBody.getLength();
+    }
+    if (!contentLengthComputed) {
+      contentLength = processor.getContentLength(charset, boundary, data);
+      contentLengthComputed = true;
+    }
+    return contentLength;
+  }
+
+  /**
+   * Tells if the body could be written more than once (see {@link ContentSources#isRepeatable(Object)}).
+   *
+   * @return {@code false} if the body has one-shot parts.
+   */
+  public boolean isRepeatable () {
+    return encodedBody != null || partsRepeatable;
+  }
+
+  /**
+   * Releases the pre-encoded body (see {@link EncodedBody#release()}), if there is one. After that the body
+   * doesn't reference the shared arrays and buffers of the parts anymore, and it is written by encoding
+   * the parts lazily, so it could be written again only if its parts are repeatable (see {@link #isRepeatable()}).
+   * <p>
+   * {@link StreamingClient} releases the body right after the request is sent.
+   */
+  @SuppressWarnings("PMD.NullAssignment")
+  public void release () {
+    val body = encodedBody;
+    if (body == null) {
+      return;
+    }
+    // the lazily encoded parts have exactly the same length
+    contentLength = body.getLength();
+    contentLengthComputed = true;
+    encodedBody = null;
+    ENCODED_BODIES.remove(encodedBodyReference);
+    body.release();
+  }
+
+  /**
+   * Releases the pre-encoded body after an attempt to send it, unless it is the only way to retry the request.
+   *
+   * @param completed {@code true} if the request is completed and won't be retried.
+   */
+  void releaseSent (boolean completed) {
+    if (completed || partsRepeatable) {
+      release();
+    }
+  }
+
+  byte[] register () {
+    releaseCollected();
+    val placeholder = PLACEHOLDER.clone();
+    BODIES.put(placeholder, this);
+    if (encodedBody != null) {
+      encodedBodyReference = new EncodedBodyReference(placeholder, encodedBody, COLLECTED);
+      ENCODED_BODIES.add(encodedBodyReference);
+    }
+    return placeholder;
+  }
+
+  private static void releaseCollected () {
+    EncodedBodyReference reference = (EncodedBodyReference) COLLECTED.poll();
+    while (reference != null) {
+      ENCODED_BODIES.remove(reference);
+      reference.getEncodedBody().release();
+      reference = (EncodedBodyReference) COLLECTED.poll();
+    }
+  }
+
+  /**
+   * Keeps the encoded body until its request's placeholder is collected.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class EncodedBodyReference extends WeakReference<byte[]> {
+
+    @Getter
+    EncodedBody encodedBody;
+
+    EncodedBodyReference (byte[] placeholder, EncodedBody encodedBody, ReferenceQueue<byte[]> queue) {
+      super(placeholder, queue);
+      this.encodedBody = encodedBody;
+    }
+  }
+
+  /**
+   * Buffered stream with a pooled buffer. Closing flushes it and returns the buffer
+   * to the pool, but leaves the destination stream open.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class PooledBufferedOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    OutputStream destination;
+
+    byte[] buffer;
+
+    @NonFinal
+    int count;
+
+    @NonFinal
+    boolean closed;
+
+    PooledBufferedOutputStream (OutputStream destination) {
+      super();
+      this.destination = destination;
+      buffer = BufferPool.SHARED.acquire(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write (int value) throws IOException {
+      if (count == buffer.length) {
+        flushBuffer();
+      }
+      buffer[count++] = (byte) value;
+    }
+
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+      if (length >= buffer.length) {
+        flushBuffer();
+        destination.write(bytes, offset, length);
+        return;
+      }
+      if (length > buffer.length - count) {
+        flushBuffer();
+      }
+      System.arraycopy(bytes, offset, buffer, count, length);
+      count += length;
+    }
+
+    @Override
+    public void flush () throws IOException {
+      flushBuffer();
+      destination.flush();
+    }
+
+    @Override
+    public void close () throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        flush();
+      } finally {
+        BufferPool.SHARED.release(buffer);
+      }
+    }
+
+    private void flushBuffer () throws IOException {
+      if (count > 0) {
+        destination.write(buffer, 0, count);
+        count = 0;
+      }
+    }
+  }
+}
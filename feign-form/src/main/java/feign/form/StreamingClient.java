@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.Util.CONTENT_ENCODING;
+import static feign.Util.CONTENT_LENGTH;
+import static feign.Util.ENCODING_DEFLATE;
+import static feign.Util.ENCODING_GZIP;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * {@link Client} which sends {@link StreamingBody} requests via {@link HttpURLConnection}
+ * without buffering the body. All other requests are passed to the delegate client.
+ * <p>
+ * The body's length is computed up front and sent as {@code Content-Length}; compressed
+ * or larger than 2GB bodies are sent with chunked transfer encoding.
+ * <p>
+ * The pre-encoded bodies (off-heap, segmented and spilling ones) are released right after
+ * the request is sent (see {@link StreamingBody#release()}).
+ *
+ * @author Artem Labazin
+ */
+@Slf4j
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class StreamingClient implements Client {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private static final int FIRST_ERROR_STATUS = 400;
+
+  Client delegate;
+
+  SSLSocketFactory sslContextFactory;
+
+  HostnameVerifier hostnameVerifier;
+
+  /**
+   * Constructor with the default Feign's client as a delegate.
+   */
+  public StreamingClient () {
+    this(new Client.Default(null, null), null, null);
+  }
+
+  /**
+   * Constructor with specified delegate client.
+   *
+   * @param delegate delegate client, for the requests without streaming body.
+   */
+  public StreamingClient (Client delegate) {
+    this(delegate, null, null);
+  }
+
+  /**
+   * Constructor with specified delegate client and SSL settings.
+   *
+   * @param delegate           delegate client, for the requests without streaming body.
+   * @param sslContextFactory  SSL socket factory for HTTPS connections, may be {@code null}.
+   * @param hostnameVerifier   hostname verifier for HTTPS connections, may be {@code null}.
+   */
+  public StreamingClient (Client delegate, SSLSocketFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+    this.delegate = delegate;
+    this.sslContextFactory = sslContextFactory;
+    this.hostnameVerifier = hostnameVerifier;
+  }
+
+  @Override
+  public Response execute (Request request, Options options) throws IOException {
+    StreamingBody body = StreamingBody.of(request);
+    if (body == null) {
+      return delegate.execute(request, options);
+    }
+    boolean completed = false;
+    try {
+      HttpURLConnection connection = openConnection(request, options);
+      send(connection, request, body);
+      val response = convertResponse(connection, request);
+      completed = response.status() < FIRST_ERROR_STATUS;
+      return response;
+    } finally {
+      // the failed requests with one-shot parts keep the encoded body for the retries
+      body.releaseSent(completed);
+    }
+  }
+
+  private HttpURLConnection openConnection (Request request, Options options) throws IOException {
+    val connection = (HttpURLConnection) new URL(request.url()).openConnection();
+    if (connection instanceof HttpsURLConnection) {
+      val sslConnection = (HttpsURLConnection) connection;
+      if (sslContextFactory != null) {
+        sslConnection.setSSLSocketFactory(sslContextFactory);
+      }
+      if (hostnameVerifier != null) {
+        sslConnection.setHostnameVerifier(hostnameVerifier);
+      }
+    }
+    connection.setConnectTimeout(options.connectTimeoutMillis());
+    connection.setReadTimeout(options.readTimeoutMillis());
+    connection.setAllowUserInteraction(false);
+    connection.setInstanceFollowRedirects(options.isFollowRedirects());
+    connection.setRequestMethod(request.httpMethod().name());
+
+    boolean hasAcceptHeader = false;
+    for (val entry : request.headers().entrySet()) {
+      if ("Accept".equalsIgnoreCase(entry.getKey())) {
+        hasAcceptHeader = true;
+      }
+      if (CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+        continue;
+      }
+      for (val value : entry.getValue()) {
+        connection.addRequestProperty(entry.getKey(), value);
+      }
+    }
+    if (!hasAcceptHeader) {
+      connection.addRequestProperty("Accept", "*/*");
+    }
+    return connection;
+  }
+
+  private void send (HttpURLConnection connection, Request request, StreamingBody body) throws IOException {
+    Collection<String> contentEncodings = request.headers().get(CONTENT_ENCODING);
+    val length = isCompressed(contentEncodings)
+                 ? -1
+                 : body.getContentLength();
+    // Java 6 API has only int version of the fixed length mode
+    if (length >= 0 && length <= Integer.MAX_VALUE) {
+      connection.setFixedLengthStreamingMode((int) length);
+    } else {
+      connection.setChunkedStreamingMode(CHUNK_SIZE);
+    }
+    connection.setDoOutput(true);
+
+    OutputStream outputStream = connection.getOutputStream();
+    try {
+      outputStream = wrap(outputStream, contentEncodings);
+      body.writeTo(outputStream);
+    } finally {
+      try {
+        outputStream.close();
+      } catch (IOException ex) {
+        log.error("Closing connection's output stream error", ex);
+      }
+    }
+  }
+
+  private boolean isCompressed (Collection<String> contentEncodings) {
+    return contentEncodings != null
+           && (contentEncodings.contains(ENCODING_GZIP) || contentEncodings.contains(ENCODING_DEFLATE));
+  }
+
+  private OutputStream wrap (OutputStream outputStream, Collection<String> contentEncodings) throws IOException {
+    if (contentEncodings == null) {
+      return outputStream;
+    }
+    if (contentEncodings.contains(ENCODING_GZIP)) {
+      return new GZIPOutputStream(outputStream);
+    }
+    if (contentEncodings.contains(ENCODING_DEFLATE)) {
+      return new DeflaterOutputStream(outputStream);
+    }
+    return outputStream;
+  }
+
+  private Response convertResponse (HttpURLConnection connection, Request request) throws IOException {
+    int status = connection.getResponseCode();
+    if (status < 0) {
+      val message = String.format("Invalid status(%s) executing %s %s",
+                                  status, connection.getRequestMethod(), connection.getURL());
+      throw new IOException(message);
+    }
+
+    val headers = new LinkedHashMap<String, Collection<String>>();
+    for (Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+      // response message
+      if (field.getKey() != null) {
+        headers.put(field.getKey(), field.getValue());
+      }
+    }
+
+    int contentLength = connection.getContentLength();
+    Integer length = contentLength < 0
+                     ? null
+                     : contentLength;
+
+    InputStream stream = status >= FIRST_ERROR_STATUS
+                         ? connection.getErrorStream()
+                         : connection.getInputStream();
+
+    return Response.builder()
+        .status(status)
+        .reason(connection.getResponseMessage())
+        .headers(headers)
+        .request(request)
+        .body(stream, length)
+        .build();
+  }
+}
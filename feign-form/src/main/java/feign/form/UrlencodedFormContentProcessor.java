@@ -17,9 +17,12 @@
 package feign.form;
 
 import static feign.form.ContentType.URLENCODED;
+import static feign.form.util.PojoUtil.isUserPojo;
+import static feign.form.util.PrimitiveArrayUtil.isPrimitiveArray;
+import static lombok.AccessLevel.PRIVATE;
 
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -28,35 +31,37 @@ import java.util.Map.Entry;
 import feign.Request;
 import feign.RequestTemplate;
 import feign.codec.EncodeException;
-import lombok.SneakyThrows;
+import feign.form.util.PercentEncoder;
+import feign.form.util.PrimitiveArrayUtil;
+import feign.form.util.PrimitiveArrayUtil.ElementVisitor;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.val;
 
 /**
  *
  * @author Artem Labazin
  */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
 public class UrlencodedFormContentProcessor implements ContentProcessor {
 
-  private static final char QUERY_DELIMITER = '&';
+  ValueFormatters valueFormatters = new ValueFormatters();
 
-  private static final char EQUAL_SIGN = '=';
-
-  @SneakyThrows
-  private static String encode (Object string, Charset charset) {
-    return URLEncoder.encode(string.toString(), charset.name());
-  }
+  @NonFinal
+  FormFlattener flattener;
 
   @Override
-  public void process (RequestTemplate template, Charset charset, Map<String, Object> data) throws EncodeException {
-    val bodyData = new StringBuilder();
+  public void process (RequestTemplate template, Charset charset, Map<String, Object> formData) throws EncodeException {
+    Map<String, Object> data = flattener == null
+                               ? formData
+                               : flattener.flatten(formData);
+    PercentEncoder bodyData = new PercentEncoder(charset);
     for (Entry<String, Object> entry : data.entrySet()) {
       if (entry == null || entry.getKey() == null) {
         continue;
       }
-      if (bodyData.length() > 0) {
-        bodyData.append(QUERY_DELIMITER);
-      }
-      bodyData.append(createKeyValuePair(entry, charset));
+      appendKeyValuePair(bodyData, entry.getKey(), entry.getValue());
     }
 
     val contentTypeValue = new StringBuilder()
@@ -64,7 +69,8 @@ public class UrlencodedFormContentProcessor implements ContentProcessor {
         .append("; charset=").append(charset.name())
         .toString();
 
-    val bytes = bodyData.toString().getBytes(charset);
+    val bytes = bodyData.toByteArray();
+    bodyData.release();
     val body = Request.Body.encoded(bytes, charset);
 
     template.header(CONTENT_TYPE_HEADER, Collections.<String>emptyList()); // reset header
@@ -77,50 +83,96 @@ public class UrlencodedFormContentProcessor implements ContentProcessor {
     return URLENCODED;
   }
 
-  private String createKeyValuePair (Entry<String, Object> entry, Charset charset) {
-    String encodedKey = encode(entry.getKey(), charset);
-    Object value = entry.getValue();
+  /**
+   * Sets the way the nested POJOs, maps and collections of them are flattened to the keys,
+   * like {@code a.b.c} or {@code a[0][b]}. The keys are planned once per root key and POJO class.
+   *
+   * @param flatteningStyle flattening style, {@link FlatteningStyle#NONE} turns the flattening off (default).
+   */
+  public final void setFlatteningStyle (FlatteningStyle flatteningStyle) {
+    flattener = flatteningStyle == FlatteningStyle.NONE
+                ? null
+                : new FormFlattener(flatteningStyle, new FormatterLeaves(valueFormatters));
+  }
 
+  /**
+   * Returns the formatters of the scalar values (enums, dates, etc.).
+   * The formatters could be replaced or added (see {@link ValueFormatters#register(Class, ValueFormatter)}).
+   *
+   * @return scalar values formatters.
+   */
+  public final ValueFormatters getValueFormatters () {
+    return valueFormatters;
+  }
+
+  private void appendKeyValuePair (PercentEncoder bodyData, String key, Object value) {
     if (value == null) {
-      return encodedKey;
-    } else if (value.getClass().isArray()) {
-      return createKeyValuePairFromArray(encodedKey, value, charset);
+      bodyData.appendPair(key, null);
+    } else if (value instanceof Object[]) {
+      appendKeyValuePairs(bodyData, key, Arrays.asList((Object[]) value));
+    } else if (isPrimitiveArray(value.getClass())) {
+      PrimitiveArrayUtil.forEach(value, new PairsAppender(bodyData, key));
     } else if (value instanceof Collection) {
-      return createKeyValuePairFromCollection(encodedKey, value, charset);
+      appendKeyValuePairs(bodyData, key, (Collection<?>) value);
+    } else {
+      bodyData.appendPair(key, valueFormatters.format(value));
     }
-    return new StringBuilder()
-        .append(encodedKey)
-        .append(EQUAL_SIGN)
-        .append(encode(value, charset))
-        .toString();
   }
 
-  @SuppressWarnings("unchecked")
-  private String createKeyValuePairFromCollection (String key, Object values, Charset charset) {
-    val collection = (Collection) values;
-    val array = collection.toArray(new Object[0]);
-    return createKeyValuePairFromArray(key, array, charset);
+  private void appendKeyValuePairs (PercentEncoder bodyData, String key, Iterable<?> values) {
+    for (Object value : values) {
+      if (value != null) {
+        bodyData.appendPair(key, valueFormatters.format(value));
+      }
+    }
   }
 
-  private String createKeyValuePairFromArray (String key, Object values, Charset charset) {
-    val result = new StringBuilder();
-    val array = (Object[]) values;
+  /**
+   * The user's POJOs, except the scalars (see {@link ValueFormatters}), are flattened.
+   */
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class FormatterLeaves implements FormFlattener.Leaves {
 
-    for (int index = 0; index < array.length; index++) {
-      val value = array[index];
-      if (value == null) {
-        continue;
-      }
+    ValueFormatters valueFormatters;
 
-      if (index > 0) {
-        result.append(QUERY_DELIMITER);
-      }
+    @Override
+    public boolean isLeaf (Object value) {
+      return !isUserPojo(value) || valueFormatters.find(value.getClass()) != null;
+    }
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class PairsAppender implements ElementVisitor {
+
+    PercentEncoder bodyData;
+
+    String key;
+
+    @Override
+    public void visit (long element) {
+      bodyData.appendPair(key, element);
+    }
+
+    @Override
+    public void visit (float element) {
+      bodyData.appendPair(key, String.valueOf(element));
+    }
+
+    @Override
+    public void visit (double element) {
+      bodyData.appendPair(key, String.valueOf(element));
+    }
+
+    @Override
+    public void visit (boolean element) {
+      bodyData.appendPair(key, String.valueOf(element));
+    }
 
-      result
-          .append(key)
-          .append(EQUAL_SIGN)
-          .append(encode(value, charset));
+    @Override
+    public void visit (char element) {
+      bodyData.appendPair(key, String.valueOf(element));
     }
-    return result.toString();
   }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Formatters of the scalar form values, which are written as the plain text parameters
+ * (multipart {@code text/plain} parts and {@code application/x-www-form-urlencoded} pairs),
+ * instead of encoding them by the delegate encoder.
+ * <p>
+ * The default formatters are:
+ * <ul>
+ * <li>{@link Enum}, {@link UUID}, {@link URI}, {@link Character} and {@link Date} - {@link #TO_STRING};</li>
+ * <li>{@code java.time} values (instants, dates, durations, etc.) - {@link #TO_STRING}, which is ISO-8601.</li>
+ * </ul>
+ * The dates could be sent in ISO-8601 with {@code register(Date.class, ISO_8601_DATE)}.
+ * A formatter is applied to the registered class and its subclasses, the lookup is cached per value class.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class ValueFormatters {
+
+  /**
+   * Formats the value with its {@link Object#toString()}.
+   */
+  public static final ValueFormatter TO_STRING;
+
+  /**
+   * Formats the enum with its {@link Enum#name()}.
+   */
+  public static final ValueFormatter ENUM_NAME;
+
+  /**
+   * Formats the {@link Date} as the ISO-8601 UTC timestamp with milliseconds, like {@code 2019-03-01T12:30:00.000Z}.
+   */
+  public static final ValueFormatter ISO_8601_DATE;
+
+  /**
+   * Formats the {@link Date} as the number of milliseconds since the epoch.
+   */
+  public static final ValueFormatter EPOCH_MILLIS_DATE;
+
+  private static final ValueFormatter NONE;
+
+  private static final String JAVA_TIME_PACKAGE = "java.time.";
+
+  static {
+    TO_STRING = new ToStringFormatter();
+    ENUM_NAME = new EnumNameFormatter();
+    ISO_8601_DATE = new IsoDateFormatter();
+    EPOCH_MILLIS_DATE = new EpochMillisFormatter();
+    NONE = new ToStringFormatter();
+  }
+
+  ConcurrentMap<Class<?>, ValueFormatter> registered;
+
+  ConcurrentMap<Class<?>, ValueFormatter> cache;
+
+  /**
+   * Creates the formatters with the defaults.
+   */
+  public ValueFormatters () {
+    registered = new ConcurrentHashMap<Class<?>, ValueFormatter>();
+    cache = new ConcurrentHashMap<Class<?>, ValueFormatter>();
+    registered.put(Enum.class, TO_STRING);
+    registered.put(UUID.class, TO_STRING);
+    registered.put(URI.class, TO_STRING);
+    registered.put(Character.class, TO_STRING);
+    registered.put(Date.class, TO_STRING);
+  }
+
+  /**
+   * Registers the formatter of the class and its subclasses, it replaces the previous one.
+   * The formatters should be registered before the requests are encoded.
+   *
+   * @param type      values class.
+   * @param formatter class's formatter.
+   *
+   * @return this formatters.
+   */
+  public ValueFormatters register (Class<?> type, ValueFormatter formatter) {
+    registered.put(type, formatter);
+    cache.clear();
+    return this;
+  }
+
+  /**
+   * Finds the formatter of the class's values.
+   *
+   * @param type values class.
+   *
+   * @return class's formatter or {@code null}, if the class's values are not scalar.
+   */
+  @Nullable
+  public ValueFormatter find (Class<?> type) {
+    ValueFormatter formatter = cache.get(type);
+    if (formatter == null) {
+      formatter = lookup(type);
+      cache.put(type, formatter);
+    }
+    return NONE.equals(formatter)
+           ? null
+           : formatter;
+  }
+
+  /**
+   * Formats the scalar value or returns it as is.
+   *
+   * @param value any value.
+   *
+   * @return value's text, if the value is scalar, or the value itself.
+   */
+  public Object format (Object value) {
+    val formatter = find(value.getClass());
+    return formatter == null
+           ? value
+           : formatter.format(value);
+  }
+
+  private ValueFormatter lookup (Class<?> type) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      ValueFormatter formatter = registered.get(current);
+      if (formatter != null) {
+        return formatter;
+      }
+      for (Class<?> implemented : current.getInterfaces()) {
+        formatter = registered.get(implemented);
+        if (formatter != null) {
+          return formatter;
+        }
+      }
+    }
+    return type.getName().startsWith(JAVA_TIME_PACKAGE)
+           ? TO_STRING
+           : NONE;
+  }
+
+  private static final class ToStringFormatter implements ValueFormatter {
+
+    @Override
+    public String format (Object value) {
+      return value.toString();
+    }
+  }
+
+  private static final class EnumNameFormatter implements ValueFormatter {
+
+    @Override
+    public String format (Object value) {
+      return ((Enum<?>) value).name();
+    }
+  }
+
+  private static final class EpochMillisFormatter implements ValueFormatter {
+
+    @Override
+    public String format (Object value) {
+      return String.valueOf(((Date) value).getTime());
+    }
+  }
+
+  /**
+   * ISO-8601 UTC formatter, which computes the proleptic Gregorian date right from the epoch milliseconds
+   * (without the thread-unsafe {@link java.text.SimpleDateFormat} or a calendar per value).
+   */
+  private static final class IsoDateFormatter implements ValueFormatter {
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private static final long DAYS_PER_ERA = 146097L;
+
+    private static final long EPOCH_SHIFT = 719468L;
+
+    private static final int TIMESTAMP_LENGTH = 24;
+
+    @Override
+    public String format (Object value) {
+      long millis = ((Date) value).getTime();
+      long days = floorDiv(millis, MILLIS_PER_DAY);
+      int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+
+      // civil date from the days count, see http://howardhinnant.github.io/date_algorithms.html
+      long shifted = days + EPOCH_SHIFT;
+      long era = floorDiv(shifted, DAYS_PER_ERA);
+      int dayOfEra = (int) (shifted - era * DAYS_PER_ERA);
+      int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+      int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+      int shiftedMonth = (5 * dayOfYear + 2) / 153;
+      int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+      int month = shiftedMonth < 10
+                  ? shiftedMonth + 3
+                  : shiftedMonth - 9;
+      long year = yearOfEra + era * 400 + (month <= 2
+                                           ? 1
+                                           : 0);
+
+      val builder = new StringBuilder(TIMESTAMP_LENGTH);
+      if (year < 0) {
+        builder.append('-');
+      }
+      appendPadded(builder, Math.abs(year), 4).append('-');
+      appendPadded(builder, month, 2).append('-');
+      appendPadded(builder, day, 2).append('T');
+      appendPadded(builder, millisOfDay / 3600000, 2).append(':');
+      appendPadded(builder, millisOfDay / 60000 % 60, 2).append(':');
+      appendPadded(builder, millisOfDay / 1000 % 60, 2).append('.');
+      appendPadded(builder, millisOfDay % 1000, 3).append('Z');
+      return builder.toString();
+    }
+
+    private static long floorDiv (long dividend, long divisor) {
+      long quotient = dividend / divisor;
+      return dividend % divisor < 0
+             ? quotient - 1
+             : quotient;
+    }
+
+    private static StringBuilder appendPadded (StringBuilder builder, long number, int width) {
+      val digits = Long.toString(number);
+      for (int i = digits.length(); i < width; i++) {
+        builder.append('0');
+      }
+      return builder.append(digits);
+    }
+  }
+}
@@ -16,25 +16,29 @@
 
 package feign.form.multipart;
 
-import static feign.form.ContentProcessor.CRLF;
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
 
 import java.net.URLConnection;
 
 import feign.codec.EncodeException;
-import lombok.SneakyThrows;
 import lombok.val;
 
 /**
  *
  * @author Artem Labazin
  */
-public abstract class AbstractWriter implements Writer {
+public abstract class AbstractWriter implements TypedWriter {
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return DEPENDS_ON_VALUE;
+  }
 
   @Override
   public void write (Output output, String boundary, String key, Object value) throws EncodeException {
-    output.write("--").write(boundary).write(CRLF);
+    output.writeBoundary(boundary);
     write(output, key, value);
-    output.write(CRLF);
+    output.getHeaderTemplates().writeLineBreak(output);
   }
 
   /**
@@ -61,14 +65,7 @@ public abstract class AbstractWriter implements Writer {
    * @param fileName    file name.
    * @param contentType type of file content. May be the {@code null}, in that case it will be determined by file name.
    */
-  @SneakyThrows
   protected void writeFileMetadata (Output output, String name, String fileName, String contentType) {
-    val contentDespositionBuilder = new StringBuilder()
-        .append("Content-Disposition: form-data; name=\"").append(name).append("\"");
-    if (fileName != null) {
-      contentDespositionBuilder.append("; ").append("filename=\"").append(fileName).append("\"");
-    }
-
     String fileContentType = contentType;
     if (fileContentType == null) {
       if (fileName != null) {
@@ -79,13 +76,8 @@ public abstract class AbstractWriter implements Writer {
       }
     }
 
-    val string = new StringBuilder()
-        .append(contentDespositionBuilder.toString()).append(CRLF)
-        .append("Content-Type: ").append(fileContentType).append(CRLF)
-        .append("Content-Transfer-Encoding: binary").append(CRLF)
-        .append(CRLF)
-        .toString();
-
-    output.write(string);
+    val templates = output.getHeaderTemplates();
+    templates.writeContentDisposition(output, name, fileName);
+    templates.writeFileContentType(output, fileContentType);
   }
 }
@@ -29,11 +29,16 @@ public class ByteArrayWriter extends AbstractWriter {
     return value instanceof byte[];
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(type == byte[].class);
+  }
+
   @Override
   protected void write (Output output, String key, Object value) throws EncodeException {
     writeFileMetadata(output, key, null, null);
 
     byte[] bytes = (byte[]) value;
-    output.write(bytes);
+    output.writeShared(bytes, 0, bytes.length);
   }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import java.nio.ByteBuffer;
+
+import feign.codec.EncodeException;
+
+/**
+ * Writes {@link ByteBuffer} values (heap, direct or memory-mapped), as the files with their remaining bytes.
+ * The buffer's content is not copied into a temporary array: the in-memory body copies it right into its array,
+ * the segmented body references it, and the channel-based outputs write it to their channels.
+ * The buffer's position is not changed, so the part could be written again (on retry).
+ *
+ * @author Artem Labazin
+ */
+public class ByteBufferWriter extends AbstractWriter {
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return value instanceof ByteBuffer;
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(ByteBuffer.class.isAssignableFrom(type));
+  }
+
+  @Override
+  protected void write (Output output, String key, Object value) throws EncodeException {
+    writeFileMetadata(output, key, null, null);
+    output.writeShared((ByteBuffer) value);
+  }
+}
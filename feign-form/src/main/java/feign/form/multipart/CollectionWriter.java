@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static feign.form.util.PathUtil.isPath;
+import static feign.form.util.PathUtil.isPathType;
+import static feign.form.util.StreamUtil.isStream;
+import static feign.form.util.StreamUtil.isStreamType;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.Iterator;
+
+import feign.codec.EncodeException;
+import feign.form.util.StreamUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Writes arrays, iterables and {@code java.util.stream.Stream}s as the repeated parts with the same name.
+ * Every element is written by its own writer (found by the {@link WriterDispatcher}, which caches the lookup
+ * per element class), so the mixed collections (files, arrays, {@link feign.form.FormData}, parameters) are
+ * supported. The elements without a dedicated writer are written by the fallback writer one by one.
+ * <p>
+ * The elements are iterated lazily, the collection is never copied. The streams could be iterated only once,
+ * so their length is not counted (see {@link Output#markUnknownLength()}) and the streaming body is sent chunked.
+ *
+ * @author Artem Labazin
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class CollectionWriter extends AbstractWriter {
+
+  WriterDispatcher writers;
+
+  Writer fallback;
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return value instanceof Object[]
+           || value instanceof Iterable && !isPath(value)
+           || isStream(value);
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(Object[].class.isAssignableFrom(type)
+                            || Iterable.class.isAssignableFrom(type) && !isPathType(type)
+                            || isStreamType(type));
+  }
+
+  @Override
+  public void write (Output output, String boundary, String key, Object value) throws EncodeException {
+    if (value instanceof Object[]) {
+      for (Object element : (Object[]) value) {
+        writeElement(output, boundary, key, element);
+      }
+    } else if (value instanceof Iterable) {
+      for (Object element : (Iterable<?>) value) {
+        writeElement(output, boundary, key, element);
+      }
+    } else if (output.isCounting()) {
+      output.markUnknownLength();
+    } else {
+      writeStream(output, boundary, key, value);
+    }
+  }
+
+  private void writeStream (Output output, String boundary, String key, Object stream) {
+    try {
+      Iterator<?> iterator = StreamUtil.iterator(stream);
+      while (iterator.hasNext()) {
+        writeElement(output, boundary, key, iterator.next());
+      }
+    } finally {
+      StreamUtil.close(stream);
+    }
+  }
+
+  private void writeElement (Output output, String boundary, String key, Object element) {
+    if (element == null) {
+      return;
+    }
+    Writer writer = writers.find(element);
+    if (writer == null) {
+      writer = fallback;
+    }
+    writer.write(output, boundary, key, element);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+import feign.codec.EncodeException;
+import feign.form.ContentSource;
+import feign.form.ContentSources;
+import feign.form.StreamingFormData;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Writes {@link ContentSource}, {@link StreamingFormData}, {@link InputStream} and {@link ReadableByteChannel} values.
+ * The content is copied in chunks right into the body. A new stream is opened each time the part is written,
+ * and it must have exactly {@link ContentSource#getLength()} bytes (if the length is known), so the repeated
+ * bodies are the same. The plain streams and channels are written as one-shot sources of unknown length.
+ *
+ * @author Artem Labazin
+ */
+@Slf4j
+public class ContentSourceWriter extends AbstractWriter {
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return value instanceof ContentSource
+           || value instanceof StreamingFormData
+           || value instanceof InputStream
+           || value instanceof ReadableByteChannel;
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(ContentSource.class.isAssignableFrom(type)
+                            || StreamingFormData.class.isAssignableFrom(type)
+                            || InputStream.class.isAssignableFrom(type)
+                            || ReadableByteChannel.class.isAssignableFrom(type));
+  }
+
+  @Override
+  protected void write (Output output, String key, Object value) throws EncodeException {
+    ContentSource source;
+    if (value instanceof StreamingFormData) {
+      val formData = (StreamingFormData) value;
+      writeFileMetadata(output, key, formData.getFileName(), formData.getContentType());
+      source = formData.getSource();
+    } else {
+      writeFileMetadata(output, key, null, null);
+      source = toContentSource(value);
+    }
+
+    long length = source.getLength();
+    if (output.isCounting()) {
+      if (length < 0) {
+        output.markUnknownLength();
+      } else {
+        output.count(length);
+      }
+      return;
+    }
+
+    InputStream input = null;
+    try {
+      input = source.openStream();
+      if (length < 0) {
+        output.write(input);
+      } else {
+        output.write(input, length);
+        checkFullyRead(input, key);
+      }
+    } catch (IOException ex) {
+      val message = String.format("Writing part's '%s' content error", key);
+      throw new EncodeException(message, ex);
+    } finally {
+      if (input != null) {
+        try {
+          input.close();
+        } catch (IOException ex) {
+          log.error("Closing part's '{}' content error", key, ex);
+        }
+      }
+    }
+  }
+
+  private ContentSource toContentSource (Object value) {
+    if (value instanceof InputStream) {
+      return ContentSources.of((InputStream) value);
+    }
+    if (value instanceof ReadableByteChannel) {
+      return ContentSources.of((ReadableByteChannel) value);
+    }
+    return (ContentSource) value;
+  }
+
+  private void checkFullyRead (InputStream input, String key) throws IOException {
+    if (input.read() >= 0) {
+      throw new EncodeException("Part's '" + key + "' content is longer than its declared length");
+    }
+  }
+}
@@ -45,6 +45,11 @@ public class DelegateWriter extends AbstractWriter {
 
   @Override
   protected void write (Output output, String key, Object value) throws EncodeException {
+    if (output.isSizing()) {
+      // the value is serialized only once, into the body itself
+      output.markUnknownLength();
+      return;
+    }
     val fake = new RequestTemplate();
     delegate.encode(value, value.getClass(), fake);
     val bytes = fake.requestBody().asBytes();
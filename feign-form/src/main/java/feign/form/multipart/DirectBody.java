@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import feign.form.util.BufferPool;
+import feign.form.util.DirectBufferPool;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Off-heap body storage - a list of the pooled direct {@link ByteBuffer} segments.
+ * <p>
+ * The body is written once, as a {@link WritableByteChannel} (see {@link Output#direct(java.nio.charset.Charset)}),
+ * and after that could be read any number of times via {@link #newChannel()}, {@link #newInputStream()}
+ * or {@link #writeTo(OutputStream)}. {@link #release()} returns the segments to the pool,
+ * the body must not be used after that.
+ * <p>
+ * The body is not thread-safe while it is written or released, but it could be read concurrently.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class DirectBody implements EncodedBody, WritableByteChannel {
+
+  private static final int COPY_BUFFER_SIZE = 8192;
+
+  DirectBufferPool pool;
+
+  List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+
+  @Getter
+  @NonFinal
+  long length;
+
+  @NonFinal
+  boolean open = true;
+
+  @NonFinal
+  boolean released;
+
+  /**
+   * Creates a body, which takes its segments from the {@link DirectBufferPool#SHARED} pool.
+   */
+  public DirectBody () {
+    this(DirectBufferPool.SHARED);
+  }
+
+  /**
+   * Creates a body, which takes its segments from the specified pool.
+   *
+   * @param pool segments pool.
+   */
+  public DirectBody (DirectBufferPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public int write (ByteBuffer source) throws IOException {
+    checkWritable();
+    val written = source.remaining();
+    while (source.hasRemaining()) {
+      val segment = getWritableSegment();
+      if (source.remaining() <= segment.remaining()) {
+        segment.put(source);
+      } else {
+        val slice = source.duplicate();
+        slice.limit(slice.position() + segment.remaining());
+        segment.put(slice);
+        source.position(slice.position());
+      }
+    }
+    length += written;
+    return written;
+  }
+
+  /**
+   * Reads the region of the file channel right into the body's segments.
+   *
+   * @param source   file channel to read from.
+   * @param position the position within the file at which the transfer is to begin.
+   * @param count    the number of bytes to be transferred.
+   *
+   * @throws IOException in case of reading error or if the file is shorter than expected.
+   */
+  public void transferFrom (FileChannel source, long position, long count) throws IOException {
+    checkWritable();
+    val end = position + count;
+    long offset = position;
+    while (offset < end) {
+      val segment = getWritableSegment();
+      if (segment.remaining() > end - offset) {
+        segment.limit(segment.position() + (int) (end - offset));
+      }
+      val read = source.read(segment, offset);
+      segment.limit(segment.capacity());
+      if (read < 0) {
+        throw new IOException("Unexpected end of file channel, " + (end - offset) + " bytes are not transferred");
+      }
+      offset += read;
+      length += read;
+    }
+  }
+
+  @Override
+  public boolean isOpen () {
+    return open;
+  }
+
+  /**
+   * Finishes the writing. The body stays readable.
+   */
+  @Override
+  public void close () {
+    open = false;
+  }
+
+  /**
+   * Creates a new channel, which reads the body from the beginning.
+   *
+   * @return readable channel.
+   */
+  public ReadableByteChannel newChannel () {
+    checkReadable();
+    return new SegmentsChannel(getReadableSegments());
+  }
+
+  @Override
+  public InputStream newInputStream () {
+    return Channels.newInputStream(newChannel());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The bytes are copied through a pooled heap buffer.
+   */
+  @Override
+  public void writeTo (OutputStream outputStream) throws IOException {
+    checkReadable();
+    val buffer = BufferPool.SHARED.acquire(COPY_BUFFER_SIZE);
+    try {
+      for (ByteBuffer segment : getReadableSegments()) {
+        while (segment.hasRemaining()) {
+          val size = Math.min(buffer.length, segment.remaining());
+          segment.get(buffer, 0, size);
+          outputStream.write(buffer, 0, size);
+        }
+      }
+    } finally {
+      BufferPool.SHARED.release(buffer);
+    }
+  }
+
+  @Override
+  public void writeTo (WritableByteChannel channel) throws IOException {
+    checkReadable();
+    for (ByteBuffer segment : getReadableSegments()) {
+      while (segment.hasRemaining()) {
+        channel.write(segment);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The segments are returned to the pool.
+   */
+  @Override
+  public void release () {
+    if (released) {
+      return;
+    }
+    released = true;
+    open = false;
+    for (ByteBuffer segment : segments) {
+      pool.release(segment);
+    }
+    segments.clear();
+  }
+
+  /**
+   * Tells if the body's segments are already returned to the pool.
+   *
+   * @return {@code true} if the body is released.
+   */
+  public boolean isReleased () {
+    return released;
+  }
+
+  private ByteBuffer getWritableSegment () {
+    if (!segments.isEmpty()) {
+      val last = segments.get(segments.size() - 1);
+      if (last.hasRemaining()) {
+        return last;
+      }
+    }
+    val segment = pool.acquire();
+    segments.add(segment);
+    return segment;
+  }
+
+  private List<ByteBuffer> getReadableSegments () {
+    val result = new ArrayList<ByteBuffer>(segments.size());
+    for (ByteBuffer segment : segments) {
+      val view = segment.asReadOnlyBuffer();
+      view.flip();
+      result.add(view);
+    }
+    return result;
+  }
+
+  private void checkWritable () throws ClosedChannelException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  private void checkReadable () {
+    if (released) {
+      throw new IllegalStateException("The body is already released");
+    }
+  }
+
+  /**
+   * Channel, which reads the sequence of the segment views.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class SegmentsChannel implements ReadableByteChannel {
+
+    List<ByteBuffer> segments;
+
+    @NonFinal
+    int index;
+
+    @NonFinal
+    boolean open = true;
+
+    SegmentsChannel (List<ByteBuffer> segments) {
+      this.segments = segments;
+    }
+
+    @Override
+    public int read (ByteBuffer destination) throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      int read = 0;
+      while (destination.hasRemaining() && index < segments.size()) {
+        val segment = segments.get(index);
+        if (!segment.hasRemaining()) {
+          index++;
+          continue;
+        }
+        val size = Math.min(destination.remaining(), segment.remaining());
+        val slice = segment.duplicate();
+        slice.limit(slice.position() + size);
+        destination.put(slice);
+        segment.position(slice.position());
+        read += size;
+      }
+      return read == 0 && index == segments.size()
+             ? -1
+             : read;
+    }
+
+    @Override
+    public boolean isOpen () {
+      return open;
+    }
+
+    @Override
+    public void close () {
+      open = false;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Already encoded request body, which is kept outside of a single byte array
+ * (see {@link DirectBody} and {@link SegmentedBody}) and could be read any number of times.
+ *
+ * @author Artem Labazin
+ */
+public interface EncodedBody {
+
+  /**
+   * Returns the body's length.
+   *
+   * @return the body length in bytes.
+   */
+  long getLength ();
+
+  /**
+   * Writes the whole body to the stream. The stream is neither flushed nor closed.
+   *
+   * @param outputStream destination stream.
+   *
+   * @throws IOException in case of writing error.
+   */
+  void writeTo (OutputStream outputStream) throws IOException;
+
+  /**
+   * Writes the whole body to the channel.
+   *
+   * @param channel destination channel.
+   *
+   * @throws IOException in case of writing error.
+   */
+  void writeTo (WritableByteChannel channel) throws IOException;
+
+  /**
+   * Creates a new stream, which reads the body from the beginning.
+   *
+   * @return input stream.
+   */
+  InputStream newInputStream ();
+
+  /**
+   * Frees the body's resources. The body must not be used after that, the repeated calls do nothing.
+   */
+  void release ();
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The form's parts, which are already encoded with the boundary (see {@link feign.form.PreparedForm}).
+ * The bytes are shared between the requests, so they are never modified,
+ * and they are written by {@link EncodedPartsWriter} as is.
+ *
+ * @author Artem Labazin
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class EncodedParts {
+
+  /**
+   * The boundary, which the parts are encoded with.
+   */
+  @Getter
+  String boundary;
+
+  byte[] bytes;
+
+  /**
+   * Returns the size of the encoded parts.
+   *
+   * @return the parts' size in bytes.
+   */
+  public int getLength () {
+    return bytes.length;
+  }
+
+  void writeTo (Output output) {
+    output.writeShared(bytes, 0, bytes.length);
+  }
+}
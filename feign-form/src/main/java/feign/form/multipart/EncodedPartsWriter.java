@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import feign.codec.EncodeException;
+import lombok.val;
+
+/**
+ * Writes the {@link EncodedParts} as is, the segmented bodies reference their bytes instead of copying them.
+ *
+ * @author Artem Labazin
+ */
+public class EncodedPartsWriter implements TypedWriter {
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return value instanceof EncodedParts;
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(EncodedParts.class == type);
+  }
+
+  @Override
+  public void write (Output output, String boundary, String key, Object value) throws EncodeException {
+    val parts = (EncodedParts) value;
+    if (!parts.getBoundary().equals(boundary)) {
+      throw new EncodeException("The parts '" + key + "' are encoded with another boundary");
+    }
+    parts.writeTo(output);
+  }
+}
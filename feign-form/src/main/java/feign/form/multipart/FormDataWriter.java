@@ -33,10 +33,16 @@ public class FormDataWriter extends AbstractWriter {
     return value instanceof FormData;
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(FormData.class.isAssignableFrom(type));
+  }
+
   @Override
   protected void write (Output output, String key, Object value) throws EncodeException {
     val formData = (FormData) value;
     writeFileMetadata(output, key, formData.getFileName(), formData.getContentType());
-    output.write(formData.getData());
+    val data = formData.getData();
+    output.writeShared(data, 0, data.length);
   }
 }
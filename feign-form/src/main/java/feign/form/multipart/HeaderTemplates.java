@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static feign.form.ContentProcessor.CRLF;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import feign.form.util.CharsetUtil;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * The constant fragments of the parts' headers, encoded once per charset.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class HeaderTemplates {
+
+  private static final ConcurrentMap<Charset, HeaderTemplates> CACHE;
+
+  static {
+    CACHE = new ConcurrentHashMap<Charset, HeaderTemplates>();
+  }
+
+  static HeaderTemplates of (Charset charset) {
+    val templates = CACHE.get(charset);
+    if (templates != null) {
+      return templates;
+    }
+    val created = new HeaderTemplates(charset);
+    val previous = CACHE.putIfAbsent(charset, created);
+    return previous == null
+           ? created
+           : previous;
+  }
+
+  /**
+   * {@code true} if the charset encodes ASCII characters as the same single bytes.
+   */
+  @Getter
+  boolean asciiCompatible;
+
+  byte[] contentDispositionPrefix;
+
+  byte[] fileNamePrefix;
+
+  byte[] quoteLineBreak;
+
+  byte[] contentTypePrefix;
+
+  byte[] binaryTransferEncoding;
+
+  byte[] textContentType;
+
+  byte[] jsonContentType;
+
+  byte[] lineBreak;
+
+  private HeaderTemplates (Charset charset) {
+    asciiCompatible = CharsetUtil.isAsciiCompatible(charset);
+    contentDispositionPrefix = "Content-Disposition: form-data; name=\"".getBytes(charset);
+    fileNamePrefix = "\"; filename=\"".getBytes(charset);
+    quoteLineBreak = ('"' + CRLF).getBytes(charset);
+    contentTypePrefix = "Content-Type: ".getBytes(charset);
+    binaryTransferEncoding = (CRLF + "Content-Transfer-Encoding: binary" + CRLF + CRLF).getBytes(charset);
+    textContentType = ("Content-Type: text/plain; charset=" + charset.name() + CRLF + CRLF).getBytes(charset);
+    jsonContentType = ("Content-Type: application/json" + CRLF + CRLF).getBytes(charset);
+    lineBreak = CRLF.getBytes(charset);
+  }
+
+  /**
+   * Writes {@code Content-Disposition} header line.
+   *
+   * @param output   output writer.
+   * @param name     name for piece of data.
+   * @param fileName file name, may be {@code null}.
+   */
+  void writeContentDisposition (Output output, String name, String fileName) {
+    output.write(contentDispositionPrefix).write(name);
+    if (fileName != null) {
+      output.write(fileNamePrefix).write(fileName);
+    }
+    output.write(quoteLineBreak);
+  }
+
+  /**
+   * Writes file's {@code Content-Type} and {@code Content-Transfer-Encoding} header lines
+   * and the empty line after the headers.
+   *
+   * @param output      output writer.
+   * @param contentType file's content type.
+   */
+  void writeFileContentType (Output output, String contentType) {
+    output.write(contentTypePrefix).write(contentType).write(binaryTransferEncoding);
+  }
+
+  /**
+   * Writes {@code text/plain} {@code Content-Type} header line of the output's charset
+   * and the empty line after the headers.
+   *
+   * @param output output writer.
+   */
+  void writeTextContentType (Output output) {
+    output.write(textContentType);
+  }
+
+  /**
+   * Writes {@code application/json} {@code Content-Type} header line and the empty line after the headers.
+   *
+   * @param output output writer.
+   */
+  void writeJsonContentType (Output output) {
+    output.write(jsonContentType);
+  }
+
+  /**
+   * Writes the line break.
+   *
+   * @param output output writer.
+   */
+  void writeLineBreak (Output output) {
+    output.write(lineBreak);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+
+import feign.codec.EncodeException;
+import feign.form.JsonSerializer;
+import feign.form.util.WeakCache;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Writes any value as an {@code application/json} part. The value is serialized straight into the output
+ * by the {@link JsonSerializer}, which is created once per value class and doesn't pin it (see {@link WeakCache}).
+ * The counting output (see {@link Output#counting(java.nio.charset.Charset)}) counts the serialized bytes
+ * without keeping them,
+ * the sizing one (see {@link Output#sizing(java.nio.charset.Charset)}) doesn't serialize the value at all.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class JsonWriter extends AbstractWriter {
+
+  JsonSerializer.Factory factory;
+
+  WeakCache<Class<?>, JsonSerializer> serializers;
+
+  /**
+   * Creates the writer.
+   *
+   * @param factory serializers factory.
+   */
+  public JsonWriter (JsonSerializer.Factory factory) {
+    super();
+    this.factory = factory;
+    serializers = new WeakCache<Class<?>, JsonSerializer>();
+  }
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return true;
+  }
+
+  @Override
+  protected void write (Output output, String key, Object value) throws EncodeException {
+    if (output.isSizing()) {
+      // the value is serialized only once, into the body itself
+      output.markUnknownLength();
+      return;
+    }
+    val templates = output.getHeaderTemplates();
+    templates.writeContentDisposition(output, key, null);
+    templates.writeJsonContentType(output);
+    try {
+      getSerializer(value.getClass()).serialize(value, output.asOutputStream());
+    } catch (IOException ex) {
+      val message = String.format("Writing part's '%s' JSON error", key);
+      throw new EncodeException(message, ex);
+    }
+  }
+
+  private JsonSerializer getSerializer (Class<?> type) {
+    val serializer = serializers.get(type);
+    if (serializer != null) {
+      return serializer;
+    }
+    return serializers.putIfAbsent(type, factory.create(type));
+  }
+}
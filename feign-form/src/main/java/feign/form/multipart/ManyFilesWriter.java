@@ -16,6 +16,12 @@
 
 package feign.form.multipart;
 
+import static feign.form.multipart.TypedWriter.Applicability.ALWAYS;
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static feign.form.multipart.TypedWriter.Applicability.NEVER;
+import static feign.form.util.PathUtil.isPath;
+import static feign.form.util.PathUtil.isPathArray;
+import static feign.form.util.PathUtil.isPathType;
 import static lombok.AccessLevel.PRIVATE;
 
 import java.io.File;
@@ -25,9 +31,12 @@ import lombok.experimental.FieldDefaults;
 import lombok.val;
 
 /**
+ * Writes arrays and iterables of {@link File} or {@code java.nio.file.Path} values.
  *
  * @author Artem Labazin
+ * @deprecated the processor writes the collections by {@link CollectionWriter}, which chooses a writer per element.
  */
+@Deprecated
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class ManyFilesWriter extends AbstractWriter {
 
@@ -35,21 +44,32 @@ public class ManyFilesWriter extends AbstractWriter {
 
   @Override
   public boolean isApplicable (Object value) {
-    if (value instanceof File[]) {
+    if (value instanceof File[] || isPathArray(value)) {
       return true;
     }
-    if (!(value instanceof Iterable)) {
+    // a path is an iterable of its own name elements
+    if (!(value instanceof Iterable) || isPath(value)) {
       return false;
     }
     val iterable = (Iterable<?>) value;
     val iterator = iterable.iterator();
-    return iterator.hasNext() && iterator.next() instanceof File;
+    return iterator.hasNext() && fileWriter.isApplicable(iterator.next());
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    if (type == File[].class || type.isArray() && isPathType(type.getComponentType())) {
+      return ALWAYS;
+    }
+    return Iterable.class.isAssignableFrom(type) && !isPathType(type)
+           ? DEPENDS_ON_VALUE
+           : NEVER;
   }
 
   @Override
   public void write (Output output, String boundary, String key, Object value) throws EncodeException {
-    if (value instanceof File[]) {
-      val files = (File[]) value;
+    if (value instanceof Object[]) {
+      val files = (Object[]) value;
       for (val file : files) {
         fileWriter.write(output, boundary, key, file);
       }
@@ -16,6 +16,8 @@
 
 package feign.form.multipart;
 
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static feign.form.multipart.TypedWriter.Applicability.NEVER;
 import static lombok.AccessLevel.PRIVATE;
 
 import feign.codec.EncodeException;
@@ -23,9 +25,12 @@ import lombok.experimental.FieldDefaults;
 import lombok.val;
 
 /**
+ * Writes arrays and iterables of the parameters, the writer is chosen by the first element.
  *
  * @author Artem Labazin
+ * @deprecated the processor writes the collections by {@link CollectionWriter}, which chooses a writer per element.
  */
+@Deprecated
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class ManyParametersWriter extends AbstractWriter {
 
@@ -33,7 +38,7 @@ public class ManyParametersWriter extends AbstractWriter {
 
   @Override
   public boolean isApplicable (Object value) {
-    if (value.getClass().isArray()) {
+    if (value instanceof Object[]) {
       Object[] values = (Object[]) value;
       return values.length > 0 && parameterWriter.isApplicable(values[0]);
     }
@@ -45,9 +50,16 @@ public class ManyParametersWriter extends AbstractWriter {
     return iterator.hasNext() && parameterWriter.isApplicable(iterator.next());
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Object[].class.isAssignableFrom(type) || Iterable.class.isAssignableFrom(type)
+           ? DEPENDS_ON_VALUE
+           : NEVER;
+  }
+
   @Override
   public void write (Output output, String boundary, String key, Object value) throws EncodeException {
-    if (value.getClass().isArray()) {
+    if (value instanceof Object[]) {
       val objects = (Object[]) value;
       for (val object : objects) {
         parameterWriter.write(output, boundary, key, object);
@@ -16,32 +16,265 @@
 
 package feign.form.multipart;
 
+import static feign.form.ContentProcessor.CRLF;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static lombok.AccessLevel.PACKAGE;
 import static lombok.AccessLevel.PRIVATE;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
 
+import feign.form.util.BufferPool;
+import feign.form.util.NumberUtil;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
 
 /**
  * Output representation utility class.
+ * <p>
+ * By default, the output buffers everything in memory, but it also could write
+ * directly to an arbitrary {@link OutputStream} or {@link WritableByteChannel} (see streaming mode of
+ * {@link feign.form.MultipartFormContentProcessor}), keep them off-heap (see {@link #direct(Charset)}),
+ * reference the shared arrays instead of copying (see {@link #segmented(Charset)})
+ * or just count the bytes (see {@link #counting(Charset)} and {@link #sizing(Charset)}).
+ * <p>
+ * Strings are encoded straight into a scratch buffer - ASCII characters are copied
+ * as is (if the charset allows it), the rest goes through the output's {@link CharsetEncoder}.
+ * The scratch buffer is taken from {@link BufferPool#SHARED} and returned there by {@link #close()}.
  *
  * @author Artem Labazin
  */
-@RequiredArgsConstructor
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class Output implements Closeable {
 
-  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  private static final long MAX_MAPPING_SIZE = 64L * 1024 * 1024;
+
+  private static final long MIN_MAPPING_SIZE = 64L * 1024;
+
+  private static final int SCRATCH_SIZE = 1024;
+
+  private static final char ASCII_LIMIT = 0x80;
+
+  OutputStream outputStream;
+
+  WritableByteChannel channel;
 
   @Getter
   Charset charset;
 
+  @Getter(PACKAGE)
+  HeaderTemplates headerTemplates;
+
+  byte[] scratch;
+
+  ByteBuffer scratchBuffer;
+
+  @NonFinal
+  CharsetEncoder encoder;
+
+  @NonFinal
+  String cachedBoundary;
+
+  @NonFinal
+  byte[] boundaryLine;
+
+  @NonFinal
+  byte[] closingBoundaryLine;
+
+  @NonFinal
+  boolean closed;
+
+  /**
+   * Creates in-memory output.
+   *
+   * @param charset output's charset
+   */
+  public Output (Charset charset) {
+    this(new Buffer(), charset);
+  }
+
+  /**
+   * Creates in-memory output with the exact expected size (see
+   * {@link feign.form.MultipartFormContentProcessor#getContentLength(Charset, String, java.util.Map)}).
+   * If exactly {@code size} bytes are written, {@link #toByteArray()} returns
+   * the output's buffer itself, without copying.
+   *
+   * @param charset output's charset
+   * @param size    expected size of the output
+   */
+  public Output (Charset charset, int size) {
+    this(new Buffer(size), charset);
+  }
+
+  /**
+   * Creates output, which writes directly to the stream.
+   *
+   * @param outputStream destination stream
+   * @param charset      output's charset
+   */
+  public Output (OutputStream outputStream, Charset charset) {
+    this.outputStream = outputStream;
+    this.channel = outputStream instanceof FileOutputStream
+                   ? ((FileOutputStream) outputStream).getChannel()
+                   : Channels.newChannel(outputStream);
+    this.charset = charset;
+    headerTemplates = HeaderTemplates.of(charset);
+    scratch = BufferPool.SHARED.acquire(SCRATCH_SIZE);
+    scratchBuffer = ByteBuffer.wrap(scratch);
+  }
+
+  /**
+   * Creates output, which writes directly to the channel.
+   *
+   * @param channel destination channel
+   * @param charset output's charset
+   */
+  public Output (WritableByteChannel channel, Charset charset) {
+    this.outputStream = Channels.newOutputStream(channel);
+    this.channel = channel;
+    this.charset = charset;
+    headerTemplates = HeaderTemplates.of(charset);
+    scratch = BufferPool.SHARED.acquire(SCRATCH_SIZE);
+    scratchBuffer = ByteBuffer.wrap(scratch);
+  }
+
+  /**
+   * Creates output, which doesn't keep the written bytes, but only counts them.
+   * The file regions are counted without reading them.
+   *
+   * @param charset output's charset
+   *
+   * @return counting output
+   */
+  public static Output counting (Charset charset) {
+    return new Output(new Counter(false), charset);
+  }
+
+  /**
+   * Creates counting output, which sizes the in-memory body before it is written. Unlike
+   * {@link #counting(Charset)}, the writers don't serialize the values, which are expensive to produce
+   * (see {@link #isSizing()}), but mark the length as unknown, so the count is only the lower bound
+   * of the body length (see {@link #getCountedBytes()}).
+   *
+   * @param charset output's charset
+   *
+   * @return sizing output
+   */
+  public static Output sizing (Charset charset) {
+    return new Output(new Counter(true), charset);
+  }
+
+  /**
+   * Creates output, which keeps the written bytes off-heap, in the pooled direct buffers of {@link DirectBody}.
+   *
+   * @param charset output's charset
+   *
+   * @return off-heap output
+   */
+  public static Output direct (Charset charset) {
+    return new Output(new DirectBody(), charset);
+  }
+
+  /**
+   * Creates in-memory output, which keeps the big shared arrays (see {@link #writeShared(byte[], int, int)})
+   * by reference, in a {@link SegmentedBody}.
+   *
+   * @param charset output's charset
+   *
+   * @return segmented output
+   */
+  public static Output segmented (Charset charset) {
+    return new Output(new SegmentedBody(), charset);
+  }
+
+  /**
+   * Tells if this output only counts the written bytes. Writers may skip reading
+   * the content, which size is known, and just {@link #count(long)} it.
+   *
+   * @return {@code true} for the counting output
+   */
+  public boolean isCounting () {
+    return outputStream instanceof Counter;
+  }
+
+  /**
+   * Tells if this output only sizes the in-memory body (see {@link #sizing(Charset)}). Writers
+   * should {@link #markUnknownLength()} instead of serializing the expensive values.
+   *
+   * @return {@code true} for the sizing output
+   */
+  public boolean isSizing () {
+    return isCounting() && ((Counter) outputStream).sizing;
+  }
+
+  /**
+   * Adds the bytes to the counting output's count, without writing them.
+   *
+   * @param length number of bytes
+   *
+   * @return this output
+   *
+   * @throws IllegalStateException if this output is not a counting one
+   */
+  public Output count (long length) {
+    getCounter().count += length;
+    return this;
+  }
+
+  /**
+   * Marks the counting output's length as unknown (for example, the part's content is a stream of unknown length).
+   *
+   * @return this output
+   *
+   * @throws IllegalStateException if this output is not a counting one
+   */
+  public Output markUnknownLength () {
+    getCounter().unknown = true;
+    return this;
+  }
+
+  /**
+   * Returns the number of the bytes written to the counting output.
+   *
+   * @return number of bytes, or {@code -1} if the length is unknown (see {@link #markUnknownLength()})
+   *
+   * @throws IllegalStateException if this output is not a counting one
+   */
+  public long getCount () {
+    val counter = getCounter();
+    return counter.unknown
+           ? -1
+           : counter.count;
+  }
+
+  /**
+   * Returns the number of the bytes counted so far, even if the length is unknown.
+   *
+   * @return the exact length, or the lower bound of it if the length is unknown
+   *
+   * @throws IllegalStateException if this output is not a counting one
+   */
+  public long getCountedBytes () {
+    return getCounter().count;
+  }
+
   /**
    * Writes the string to the output.
    *
@@ -50,7 +283,54 @@ public class Output implements Closeable {
    * @return this output
    */
   public Output write (String string) {
-    return write(string.getBytes(charset));
+    int index = headerTemplates.isAsciiCompatible()
+                ? writeAscii(string)
+                : 0;
+    if (index < string.length()) {
+      writeEncoded(string, index);
+    }
+    return this;
+  }
+
+  /**
+   * Writes the decimal representation of the number (the same as {@link Long#toString(long)}) to the output.
+   *
+   * @param number number to write to this output
+   *
+   * @return this output
+   */
+  @SneakyThrows
+  public Output writeNumber (long number) {
+    if (!headerTemplates.isAsciiCompatible()) {
+      return write(Long.toString(number));
+    }
+    val length = NumberUtil.writeDecimal(number, scratch, 0);
+    outputStream.write(scratch, 0, length);
+    return this;
+  }
+
+  /**
+   * Writes the part's boundary line ({@code --boundary CRLF}).
+   *
+   * @param boundary data boundary
+   *
+   * @return this output
+   */
+  public Output writeBoundary (String boundary) {
+    prepareBoundary(boundary);
+    return write(boundaryLine);
+  }
+
+  /**
+   * Writes the closing boundary line ({@code --boundary-- CRLF}).
+   *
+   * @param boundary data boundary
+   *
+   * @return this output
+   */
+  public Output writeClosingBoundary (String boundary) {
+    prepareBoundary(boundary);
+    return write(closingBoundaryLine);
   }
 
   /**
@@ -81,17 +361,480 @@ public class Output implements Closeable {
     return this;
   }
 
+  /**
+   * Writes the byte array, which is not modified until the body is sent (for example, the part's content).
+   * The segmented output keeps a reference to the array instead of copying it, the others just write it.
+   *
+   * @param bytes  byte arrays to write to this output
+   * @param offset the offset within the array of the first byte to be read
+   * @param length the number of bytes to be read from the given array
+   *
+   * @return this output
+   */
+  public Output writeShared (byte[] bytes, int offset, int length) {
+    if (outputStream instanceof SegmentedBody) {
+      ((SegmentedBody) outputStream).writeShared(bytes, offset, length);
+      return this;
+    }
+    return write(bytes, offset, length);
+  }
+
+  /**
+   * Writes the buffer's remaining bytes, which are not modified until the body is sent (for example, the part's content).
+   * The segmented output keeps a reference to the buffer's content instead of copying it, the others just write it.
+   * Unlike {@link #write(ByteBuffer)}, the buffer's position is not changed.
+   *
+   * @param buffer buffer to write to this output
+   *
+   * @return this output
+   */
+  public Output writeShared (ByteBuffer buffer) {
+    if (outputStream instanceof SegmentedBody) {
+      ((SegmentedBody) outputStream).writeShared(buffer);
+      return this;
+    }
+    return write(buffer.duplicate());
+  }
+
+  /**
+   * Writes the buffer's remaining bytes to the output. The in-memory output copies
+   * them right into its internal array, the heap buffers are written right from their arrays,
+   * and the direct ones are written to the channel.
+   *
+   * @param buffer buffer to write to this output
+   *
+   * @return this output
+   */
+  @SneakyThrows
+  public Output write (ByteBuffer buffer) {
+    if (isCounting()) {
+      count(buffer.remaining());
+      buffer.position(buffer.limit());
+      return this;
+    }
+    if (outputStream instanceof Buffer) {
+      ((Buffer) outputStream).write(buffer);
+      return this;
+    }
+    if (buffer.hasArray()) {
+      outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      buffer.position(buffer.limit());
+      return this;
+    }
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    return this;
+  }
+
+  /**
+   * Writes the rest of the stream to the output. The counting output doesn't read the stream,
+   * its length becomes unknown.
+   *
+   * @param inputStream stream to read from
+   *
+   * @return this output
+   */
+  @SneakyThrows
+  public Output write (InputStream inputStream) {
+    if (isCounting()) {
+      return markUnknownLength();
+    }
+    int read = inputStream.read(scratch);
+    while (read >= 0) {
+      outputStream.write(scratch, 0, read);
+      read = inputStream.read(scratch);
+    }
+    return this;
+  }
+
+  /**
+   * Writes exactly {@code length} bytes of the stream to the output. The counting output doesn't read the stream.
+   *
+   * @param inputStream stream to read from
+   * @param length      the number of bytes to be read
+   *
+   * @return this output
+   */
+  @SneakyThrows
+  public Output write (InputStream inputStream, long length) {
+    if (isCounting()) {
+      return count(length);
+    }
+    long remaining = length;
+    while (remaining > 0) {
+      val read = inputStream.read(scratch, 0, (int) Math.min(scratch.length, remaining));
+      if (read < 0) {
+        throw new IOException("Unexpected end of stream, " + remaining + " bytes are not read");
+      }
+      outputStream.write(scratch, 0, read);
+      remaining -= read;
+    }
+    return this;
+  }
+
+  /**
+   * Writes the region of the file channel to the output. The bytes are transferred
+   * from channel to channel (which allows the OS to skip user-space copying),
+   * memory-mapped, when the output is in-memory, or read right into the off-heap or spilling body.
+   * The mappings are released by GC only, so the in-memory output maps only the regions
+   * of 64 KiB and more, the smaller ones are read through the scratch buffer.
+   *
+   * @param source   file channel to read from
+   * @param position the position within the file at which the transfer is to begin
+   * @param count    the number of bytes to be transferred
+   *
+   * @return this output
+   */
+  @SneakyThrows
+  public Output write (FileChannel source, long position, long count) {
+    if (isCounting()) {
+      return count(count);
+    }
+
+    val end = position + count;
+    long offset = position;
+    if (outputStream instanceof Buffer) {
+      if (count < MIN_MAPPING_SIZE) {
+        return read(source, position, count);
+      }
+      while (offset < end) {
+        val size = Math.min(MAX_MAPPING_SIZE, end - offset);
+        write(source.map(READ_ONLY, offset, size));
+        offset += size;
+      }
+      return this;
+    }
+
+    outputStream.flush();
+    if (channel instanceof DirectBody) {
+      ((DirectBody) channel).transferFrom(source, position, count);
+      return this;
+    }
+    if (outputStream instanceof SpillingBody) {
+      ((SpillingBody) outputStream).transferFrom(source, position, count);
+      return this;
+    }
+    while (offset < end) {
+      val transferred = source.transferTo(offset, end - offset, channel);
+      if (transferred <= 0) {
+        throw new IOException("Unexpected end of file channel, " + (end - offset) + " bytes are not transferred");
+      }
+      offset += transferred;
+    }
+    return this;
+  }
+
+  private Output read (FileChannel source, long position, long count) throws IOException {
+    long offset = position;
+    long remaining = count;
+    try {
+      while (remaining > 0) {
+        scratchBuffer.limit((int) Math.min(scratch.length, remaining));
+        val read = source.read(scratchBuffer, offset);
+        if (read < 0) {
+          throw new IOException("Unexpected end of file channel, " + remaining + " bytes are not read");
+        }
+        outputStream.write(scratch, 0, read);
+        scratchBuffer.clear();
+        offset += read;
+        remaining -= read;
+      }
+    } finally {
+      scratchBuffer.clear();
+    }
+    return this;
+  }
+
+  /**
+   * Returns the stream view of this output for the streaming serializers (see {@link feign.form.JsonSerializer}).
+   * The bytes are written (or counted) the same way as by {@link #write(byte[], int, int)}.
+   * Flushing and closing the view don't affect this output.
+   *
+   * @return stream, which writes to this output
+   */
+  public OutputStream asOutputStream () {
+    return new OutputStreamView(outputStream);
+  }
+
   /**
    * Returns byte array representation of this output class.
    *
    * @return byte array representation of output
+   *
+   * @throws IllegalStateException if this output writes directly to an external stream
    */
   public byte[] toByteArray () {
-    return outputStream.toByteArray();
+    if (!(outputStream instanceof ByteArrayOutputStream)) {
+      throw new IllegalStateException("Streaming output doesn't have byte array representation");
+    }
+    val buffer = (ByteArrayOutputStream) outputStream;
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Returns the off-heap body of this output (see {@link #direct(Charset)}).
+   *
+   * @return off-heap body
+   *
+   * @throws IllegalStateException if this output is not an off-heap one
+   */
+  public DirectBody toDirectBody () {
+    if (!(channel instanceof DirectBody)) {
+      throw new IllegalStateException("Not an off-heap output");
+    }
+    return (DirectBody) channel;
   }
 
+  /**
+   * Returns the segmented body of this output (see {@link #segmented(Charset)}).
+   *
+   * @return segmented body
+   *
+   * @throws IllegalStateException if this output is not a segmented one
+   */
+  public SegmentedBody toSegmentedBody () {
+    if (!(outputStream instanceof SegmentedBody)) {
+      throw new IllegalStateException("Not a segmented output");
+    }
+    return (SegmentedBody) outputStream;
+  }
+
+  /**
+   * Flushes the underlying stream.
+   *
+   * @throws IOException in case of flushing error
+   */
+  public void flush () throws IOException {
+    outputStream.flush();
+  }
+
+  /**
+   * Closes the underlying stream and returns the output's working buffers to the {@link BufferPool}.
+   *
+   * @throws IOException in case of closing error
+   */
   @Override
   public void close () throws IOException {
-    outputStream.close();
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      outputStream.close();
+    } finally {
+      BufferPool.SHARED.release(scratch);
+    }
+  }
+
+  private Counter getCounter () {
+    if (!isCounting()) {
+      throw new IllegalStateException("Not a counting output");
+    }
+    return (Counter) outputStream;
+  }
+
+  private void prepareBoundary (String value) {
+    if (value.equals(cachedBoundary)) {
+      return;
+    }
+    cachedBoundary = value;
+    boundaryLine = ("--" + value + CRLF).getBytes(charset);
+    closingBoundaryLine = ("--" + value + "--" + CRLF).getBytes(charset);
+  }
+
+  /**
+   * Copies the leading ASCII characters of the string to the output.
+   *
+   * @return index of the first non-ASCII character, or the string's length
+   */
+  @SneakyThrows
+  private int writeAscii (String string) {
+    val length = string.length();
+    int index = 0;
+    int count = 0;
+    while (index < length) {
+      val character = string.charAt(index);
+      if (character >= ASCII_LIMIT) {
+        break;
+      }
+      scratch[count++] = (byte) character;
+      index++;
+      if (count == scratch.length) {
+        outputStream.write(scratch, 0, count);
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      outputStream.write(scratch, 0, count);
+    }
+    return index;
+  }
+
+  @SneakyThrows
+  private void writeEncoded (String string, int from) {
+    if (encoder == null) {
+      encoder = charset.newEncoder()
+          .onMalformedInput(REPLACE)
+          .onUnmappableCharacter(REPLACE);
+    }
+    encoder.reset();
+    val input = CharBuffer.wrap(string, from, string.length());
+    CoderResult result = encoder.encode(input, scratchBuffer, true);
+    while (result.isOverflow()) {
+      drainScratchBuffer();
+      result = encoder.encode(input, scratchBuffer, true);
+    }
+    result = encoder.flush(scratchBuffer);
+    while (result.isOverflow()) {
+      drainScratchBuffer();
+      result = encoder.flush(scratchBuffer);
+    }
+    drainScratchBuffer();
+  }
+
+  private void drainScratchBuffer () throws IOException {
+    outputStream.write(scratch, 0, scratchBuffer.position());
+    scratchBuffer.clear();
+  }
+
+  /**
+   * In-memory buffer, which is able to copy {@link ByteBuffer}'s content directly to its array.
+   * The buffer of unknown size grows through the {@link BufferPool#SHARED} arrays, the last one is copied
+   * and returned to the pool by {@link #toByteArray()} or on closing. The sized buffer
+   * is allocated as is and is returned itself, if it is full.
+   */
+  private static final class Buffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 256;
+
+    boolean pooled;
+
+    Buffer () {
+      super(0);
+      buf = BufferPool.SHARED.acquire(INITIAL_SIZE);
+      pooled = true;
+    }
+
+    Buffer (int size) {
+      super(size);
+      pooled = false;
+    }
+
+    @Override
+    public void write (int value) {
+      ensureCapacity(count + 1);
+      buf[count++] = (byte) value;
+    }
+
+    @Override
+    public void write (byte[] bytes, int offset, int length) {
+      if (offset < 0 || length < 0 || length > bytes.length - offset) {
+        throw new IndexOutOfBoundsException();
+      }
+      ensureCapacity(count + length);
+      System.arraycopy(bytes, offset, buf, count, length);
+      count += length;
+    }
+
+    void write (ByteBuffer source) {
+      val length = source.remaining();
+      ensureCapacity(count + length);
+      source.get(buf, count, length);
+      count += length;
+    }
+
+    @Override
+    public byte[] toByteArray () {
+      if (pooled) {
+        detach();
+      }
+      return count == buf.length
+             ? buf
+             : super.toByteArray();
+    }
+
+    @Override
+    public void close () {
+      if (pooled) {
+        detach();
+      }
+    }
+
+    private void detach () {
+      val bytes = Arrays.copyOf(buf, count);
+      BufferPool.SHARED.release(buf);
+      buf = bytes;
+      pooled = false;
+    }
+
+    private void ensureCapacity (int required) {
+      if (required < 0) {
+        throw new OutOfMemoryError();
+      }
+      if (required <= buf.length) {
+        return;
+      }
+      val size = Math.max(buf.length << 1, required);
+      val grown = pooled
+                  ? BufferPool.SHARED.acquire(size)
+                  : new byte[size];
+      System.arraycopy(buf, 0, grown, 0, count);
+      if (pooled) {
+        BufferPool.SHARED.release(buf);
+      }
+      buf = grown;
+    }
+  }
+
+  /**
+   * Stream, which writes to the output's stream, but doesn't flush and close it.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class OutputStreamView extends OutputStream {
+
+    OutputStream delegate;
+
+    OutputStreamView (OutputStream delegate) {
+      super();
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write (int value) throws IOException {
+      delegate.write(value);
+    }
+
+    @Override
+    public void write (byte[] bytes, int offset, int length) throws IOException {
+      delegate.write(bytes, offset, length);
+    }
+  }
+
+  /**
+   * Discarding stream, which counts the written bytes.
+   */
+  private static final class Counter extends OutputStream {
+
+    final boolean sizing;
+
+    long count;
+
+    boolean unknown;
+
+    Counter (boolean sizing) {
+      super();
+      this.sizing = sizing;
+    }
+
+    @Override
+    public void write (int value) {
+      count++;
+    }
+
+    @Override
+    public void write (byte[] bytes, int offset, int length) {
+      count += length;
+    }
   }
 }
@@ -16,8 +16,9 @@
 
 package feign.form.multipart;
 
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static feign.form.util.PojoUtil.getProperties;
 import static feign.form.util.PojoUtil.isUserPojo;
-import static feign.form.util.PojoUtil.toMap;
 import static lombok.AccessLevel.PRIVATE;
 
 import feign.codec.EncodeException;
@@ -40,20 +41,36 @@ public class PojoWriter extends AbstractWriter {
     return isUserPojo(object);
   }
 
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    val typePackage = type.getPackage();
+    if (typePackage == null) {
+      return DEPENDS_ON_VALUE;
+    }
+    return Applicability.of(!typePackage.getName().startsWith("java."));
+  }
+
   @Override
   public void write (Output output, String boundary, String key, Object object) throws EncodeException {
-    val map = toMap(object);
-    for (val entry : map.entrySet()) {
-      val writer = findApplicableWriter(entry.getValue());
+    for (val property : getProperties(object.getClass())) {
+      val value = property.getValue(object);
+      if (value == null) {
+        continue;
+      }
+
+      val writer = findApplicableWriter(value);
       if (writer == null) {
         continue;
       }
 
-      writer.write(output, boundary, entry.getKey(), entry.getValue());
+      writer.write(output, boundary, property.getName(), value);
     }
   }
 
   private Writer findApplicableWriter (Object value) {
+    if (writers instanceof WriterDispatcher) {
+      return ((WriterDispatcher) writers).find(value);
+    }
     for (val writer : writers) {
       if (writer.isApplicable(value)) {
         return writer;
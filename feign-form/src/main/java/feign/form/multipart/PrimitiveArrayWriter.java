@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static feign.form.multipart.TypedWriter.Applicability.ALWAYS;
+import static feign.form.multipart.TypedWriter.Applicability.NEVER;
+import static feign.form.util.PrimitiveArrayUtil.isPrimitiveArray;
+import static lombok.AccessLevel.PRIVATE;
+
+import feign.codec.EncodeException;
+import feign.form.util.PrimitiveArrayUtil;
+import feign.form.util.PrimitiveArrayUtil.ElementVisitor;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Writes each element of a primitive array ({@code int[]}, {@code long[]}, {@code double[]}, etc.)
+ * as a separate text part, without boxing. The integral numbers are formatted right into the output.
+ * <p>
+ * {@code byte[]} is not handled here, it is a file content (see {@link ByteArrayWriter}).
+ *
+ * @author Artem Labazin
+ */
+public class PrimitiveArrayWriter extends AbstractWriter {
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return getApplicability(value.getClass()) == ALWAYS;
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return isPrimitiveArray(type) && type != byte[].class
+           ? ALWAYS
+           : NEVER;
+  }
+
+  @Override
+  public void write (Output output, String boundary, String key, Object value) throws EncodeException {
+    PrimitiveArrayUtil.forEach(value, new PartsWriter(output, boundary, key));
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class PartsWriter implements ElementVisitor {
+
+    Output output;
+
+    String boundary;
+
+    String key;
+
+    @Override
+    public void visit (long element) {
+      writeHeaders();
+      output.writeNumber(element);
+      writeEnd();
+    }
+
+    @Override
+    public void visit (float element) {
+      writeHeaders();
+      output.write(String.valueOf(element));
+      writeEnd();
+    }
+
+    @Override
+    public void visit (double element) {
+      writeHeaders();
+      output.write(String.valueOf(element));
+      writeEnd();
+    }
+
+    @Override
+    public void visit (boolean element) {
+      writeHeaders();
+      output.write(String.valueOf(element));
+      writeEnd();
+    }
+
+    @Override
+    public void visit (char element) {
+      writeHeaders();
+      output.write(String.valueOf(element));
+      writeEnd();
+    }
+
+    private void writeHeaders () {
+      val templates = output.getHeaderTemplates();
+      output.writeBoundary(boundary);
+      templates.writeContentDisposition(output, key, null);
+      templates.writeTextContentType(output);
+    }
+
+    private void writeEnd () {
+      output.getHeaderTemplates().writeLineBreak(output);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static feign.form.multipart.TypedWriter.Applicability.ALWAYS;
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static lombok.AccessLevel.PRIVATE;
+
+import feign.codec.EncodeException;
+import feign.form.ValueFormatters;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Writes the scalar values (enums, UUIDs, dates, etc.) as {@code text/plain} parts,
+ * formatted by the {@link ValueFormatters}.
+ *
+ * @author Artem Labazin
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class ScalarWriter extends AbstractWriter {
+
+  ValueFormatters formatters;
+
+  @Override
+  public boolean isApplicable (Object value) {
+    return formatters.find(value.getClass()) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The formatters could be registered later, so the other types are not excluded.
+   */
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return formatters.find(type) == null
+           ? DEPENDS_ON_VALUE
+           : ALWAYS;
+  }
+
+  @Override
+  protected void write (Output output, String key, Object value) throws EncodeException {
+    val templates = output.getHeaderTemplates();
+    templates.writeContentDisposition(output, key, null);
+    templates.writeTextContentType(output);
+    output.write(formatters.find(value.getClass()).format(value));
+  }
+}
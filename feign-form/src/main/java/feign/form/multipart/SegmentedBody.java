@@ -0,0 +1,349 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import feign.form.util.BufferPool;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Heap body, which references the big shared arrays and buffers (see {@link Output#writeShared(byte[], int, int)}
+ * and {@link Output#writeShared(ByteBuffer)}) instead of copying them. Everything else (boundaries, headers, small values) is copied into
+ * small chunks, so the body is a list of segments - the chunks' parts and the shared arrays' regions.
+ * <p>
+ * The body is written once, as an {@link OutputStream} (see {@link Output#segmented(java.nio.charset.Charset)}),
+ * and after that could be read any number of times. The segments are written to a
+ * {@link GatheringByteChannel} by a single gathering write, and to a stream - right from their arrays.
+ * <p>
+ * The shared arrays and buffers must not be modified, until the body is released (see {@link #release()}).
+ * {@link feign.form.StreamingClient} releases it right after the request is sent, but Feign's retries
+ * re-read the parts, so the arrays could be reused safely, when the client's method returns.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class SegmentedBody extends OutputStream implements EncodedBody {
+
+  /**
+   * Minimal size of the shared array region, which is referenced instead of copying.
+   */
+  public static final int MIN_SHARED_SIZE = 4096;
+
+  private static final int CHUNK_SIZE = 8192;
+
+  List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+
+  @NonFinal
+  byte[] chunk;
+
+  @NonFinal
+  int chunkStart;
+
+  @NonFinal
+  int chunkCount;
+
+  @Getter
+  @NonFinal
+  long length;
+
+  @NonFinal
+  boolean released;
+
+  /**
+   * Creates an empty body.
+   */
+  public SegmentedBody () {
+    super();
+    chunk = new byte[CHUNK_SIZE];
+  }
+
+  @Override
+  public void write (int value) {
+    if (chunkCount == chunk.length) {
+      nextChunk();
+    }
+    chunk[chunkCount++] = (byte) value;
+    length++;
+  }
+
+  @Override
+  public void write (byte[] bytes, int offset, int count) {
+    int from = offset;
+    int remaining = count;
+    while (remaining > 0) {
+      if (chunkCount == chunk.length) {
+        nextChunk();
+      }
+      val size = Math.min(remaining, chunk.length - chunkCount);
+      System.arraycopy(bytes, from, chunk, chunkCount, size);
+      chunkCount += size;
+      from += size;
+      remaining -= size;
+    }
+    length += count;
+  }
+
+  /**
+   * Adds the array region to the body by reference, if it is not smaller than {@link #MIN_SHARED_SIZE},
+   * or copies it otherwise.
+   *
+   * @param bytes  shared array, which is not modified until the body is sent.
+   * @param offset region offset.
+   * @param count  region length.
+   */
+  public void writeShared (byte[] bytes, int offset, int count) {
+    if (count < MIN_SHARED_SIZE) {
+      write(bytes, offset, count);
+      return;
+    }
+    sealChunk();
+    segments.add(ByteBuffer.wrap(bytes, offset, count));
+    length += count;
+  }
+
+  /**
+   * Adds the buffer's remaining bytes to the body by reference, if there are not less than
+   * {@link #MIN_SHARED_SIZE} of them, or copies them otherwise. The buffer's position is not changed.
+   * The direct buffers are referenced too, so they are written to the channels without copying.
+   *
+   * @param buffer shared buffer, which content is not modified until the body is sent.
+   */
+  public void writeShared (ByteBuffer buffer) {
+    int remaining = buffer.remaining();
+    if (remaining >= MIN_SHARED_SIZE) {
+      sealChunk();
+      segments.add(buffer.slice());
+      length += remaining;
+      return;
+    }
+    if (buffer.hasArray()) {
+      write(buffer.array(), buffer.arrayOffset() + buffer.position(), remaining);
+      return;
+    }
+    val source = buffer.duplicate();
+    while (source.hasRemaining()) {
+      if (chunkCount == chunk.length) {
+        nextChunk();
+      }
+      val size = Math.min(source.remaining(), chunk.length - chunkCount);
+      source.get(chunk, chunkCount, size);
+      chunkCount += size;
+    }
+    length += remaining;
+  }
+
+  /**
+   * Finishes the writing, the body stays readable.
+   */
+  @Override
+  public void close () {
+    sealChunk();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The heap segments are written right from their arrays, the direct ones are copied through a pooled buffer.
+   */
+  @Override
+  public void writeTo (OutputStream outputStream) throws IOException {
+    byte[] buffer = null;
+    try {
+      for (ByteBuffer segment : getSegments()) {
+        if (segment.hasArray()) {
+          outputStream.write(segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+          continue;
+        }
+        if (buffer == null) {
+          buffer = BufferPool.SHARED.acquire(CHUNK_SIZE);
+        }
+        writeDirect(segment, outputStream, buffer);
+      }
+    } finally {
+      if (buffer != null) {
+        BufferPool.SHARED.release(buffer);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The {@link GatheringByteChannel}s get all segments at once.
+   */
+  @Override
+  public void writeTo (WritableByteChannel channel) throws IOException {
+    List<ByteBuffer> buffers = getSegments();
+    if (channel instanceof GatheringByteChannel) {
+      val gathering = (GatheringByteChannel) channel;
+      val array = buffers.toArray(new ByteBuffer[0]);
+      int first = 0;
+      while (first < array.length) {
+        gathering.write(array, first, array.length - first);
+        while (first < array.length && !array[first].hasRemaining()) {
+          first++;
+        }
+      }
+      return;
+    }
+    for (ByteBuffer segment : buffers) {
+      while (segment.hasRemaining()) {
+        channel.write(segment);
+      }
+    }
+  }
+
+  @Override
+  public InputStream newInputStream () {
+    val streams = new ArrayList<InputStream>(segments.size());
+    for (ByteBuffer segment : getSegments()) {
+      streams.add(newInputStream(segment));
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  /**
+   * Returns the number of the body's segments.
+   *
+   * @return segments count.
+   */
+  public int getSegmentCount () {
+    sealChunk();
+    return segments.size();
+  }
+
+  /**
+   * Tells if the body is released, so it doesn't reference the shared arrays anymore.
+   *
+   * @return {@code true} if the body is released.
+   */
+  public boolean isReleased () {
+    return released;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The references to the chunks and the shared arrays are dropped.
+   */
+  @Override
+  public void release () {
+    if (released) {
+      return;
+    }
+    released = true;
+    segments.clear();
+    chunk = new byte[0];
+    chunkStart = 0;
+    chunkCount = 0;
+  }
+
+  private static InputStream newInputStream (ByteBuffer segment) {
+    return segment.hasArray()
+           ? new ByteArrayInputStream(segment.array(), segment.arrayOffset() + segment.position(), segment.remaining())
+           : new SegmentInputStream(segment);
+  }
+
+  private static void writeDirect (ByteBuffer segment, OutputStream outputStream, byte[] buffer) throws IOException {
+    while (segment.hasRemaining()) {
+      int size = Math.min(segment.remaining(), buffer.length);
+      segment.get(buffer, 0, size);
+      outputStream.write(buffer, 0, size);
+    }
+  }
+
+  private List<ByteBuffer> getSegments () {
+    if (released) {
+      throw new IllegalStateException("The body is already released");
+    }
+    sealChunk();
+    val result = new ArrayList<ByteBuffer>(segments.size());
+    for (ByteBuffer segment : segments) {
+      result.add(segment.duplicate());
+    }
+    return result;
+  }
+
+  private void sealChunk () {
+    if (chunkCount > chunkStart) {
+      segments.add(ByteBuffer.wrap(chunk, chunkStart, chunkCount - chunkStart));
+      chunkStart = chunkCount;
+    }
+  }
+
+  private void nextChunk () {
+    sealChunk();
+    chunk = new byte[CHUNK_SIZE];
+    chunkStart = 0;
+    chunkCount = 0;
+  }
+
+  /**
+   * Stream, which reads the direct segment's remaining bytes.
+   */
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class SegmentInputStream extends InputStream {
+
+    ByteBuffer segment;
+
+    SegmentInputStream (ByteBuffer segment) {
+      super();
+      this.segment = segment;
+    }
+
+    @Override
+    public int read () {
+      return segment.hasRemaining()
+             ? segment.get() & 0xFF
+             : -1;
+    }
+
+    @Override
+    public int read (byte[] bytes, int offset, int count) {
+      if (count == 0) {
+        return 0;
+      }
+      if (!segment.hasRemaining()) {
+        return -1;
+      }
+      val size = Math.min(count, segment.remaining());
+      segment.get(bytes, offset, size);
+      return size;
+    }
+
+    @Override
+    public int available () {
+      return segment.remaining();
+    }
+  }
+}
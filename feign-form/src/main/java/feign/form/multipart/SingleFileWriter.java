@@ -16,16 +16,21 @@
 
 package feign.form.multipart;
 
+import static feign.form.util.PathUtil.isPath;
+import static feign.form.util.PathUtil.isPathType;
+import static feign.form.util.PathUtil.toFile;
+
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.RandomAccessFile;
 
 import feign.codec.EncodeException;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
 /**
+ * Writes {@link File} and {@code java.nio.file.Path} values. The file's content
+ * is written through its {@link java.nio.channels.FileChannel}, without user-space copy loop.
  *
  * @author Artem Labazin
  */
@@ -34,23 +39,30 @@ public class SingleFileWriter extends AbstractWriter {
 
   @Override
   public boolean isApplicable (Object value) {
-    return value instanceof File;
+    return value instanceof File || isPath(value);
+  }
+
+  @Override
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(File.class.isAssignableFrom(type) || isPathType(type));
   }
 
   @Override
   protected void write (Output output, String key, Object value) throws EncodeException {
-    val file = (File) value;
+    val file = value instanceof File
+               ? (File) value
+               : toFile(value);
     writeFileMetadata(output, key, file.getName(), null);
+    if (output.isCounting()) {
+      output.count(file.length());
+      return;
+    }
 
-    InputStream input = null;
+    RandomAccessFile input = null;
     try {
-      input = new FileInputStream(file);
-      val buf = new byte[4096];
-      int length = input.read(buf);
-      while (length > 0) {
-        output.write(buf, 0, length);
-        length = input.read(buf);
-      }
+      input = new RandomAccessFile(file, "r");
+      val channel = input.getChannel();
+      output.write(channel, 0, channel.size());
     } catch (IOException ex) {
       val message = String.format("Writing file's '%s' content error", file.getName());
       throw new EncodeException(message, ex);
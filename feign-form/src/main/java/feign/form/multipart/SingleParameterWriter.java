@@ -16,8 +16,6 @@
 
 package feign.form.multipart;
 
-import static feign.form.ContentProcessor.CRLF;
-
 import feign.codec.EncodeException;
 import lombok.val;
 
@@ -35,14 +33,17 @@ public class SingleParameterWriter extends AbstractWriter {
   }
 
   @Override
-  protected void write (Output output, String key, Object value) throws EncodeException {
-    val string = new StringBuilder()
-        .append("Content-Disposition: form-data; name=\"").append(key).append('"').append(CRLF)
-        .append("Content-Type: text/plain; charset=").append(output.getCharset().name()).append(CRLF)
-        .append(CRLF)
-        .append(value.toString())
-        .toString();
+  public Applicability getApplicability (Class<?> type) {
+    return Applicability.of(Number.class.isAssignableFrom(type) ||
+                            CharSequence.class.isAssignableFrom(type) ||
+                            Boolean.class == type);
+  }
 
-    output.write(string);
+  @Override
+  protected void write (Output output, String key, Object value) throws EncodeException {
+    val templates = output.getHeaderTemplates();
+    templates.writeContentDisposition(output, key, null);
+    templates.writeTextContentType(output);
+    output.write(value.toString());
   }
 }
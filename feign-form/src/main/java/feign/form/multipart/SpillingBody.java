@@ -0,0 +1,342 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import feign.form.util.BufferPool;
+import feign.form.util.MemoryBudget;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Hybrid body, which is buffered in memory up to a threshold and spills to a temporary file after that.
+ * <p>
+ * The memory is held in the pooled chunks and is accounted by the process-wide {@link MemoryBudget}:
+ * the body spills, when it outgrows its own threshold or the budget is exhausted. The expected
+ * body length could be passed up front, so the bodies, which are known to be too big, are written
+ * right to the file. The spilled body is read back via {@link FileChannel}.
+ * <p>
+ * The body is written once, as an {@link OutputStream}, and after that could be read any number of times.
+ * {@link #release()} frees the memory and deletes the file, {@link feign.form.StreamingClient} releases
+ * the body right after the request is sent.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class SpillingBody extends OutputStream implements EncodedBody {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  long memoryThreshold;
+
+  MemoryBudget budget;
+
+  List<byte[]> chunks = new ArrayList<byte[]>();
+
+  @NonFinal
+  int chunkCount;
+
+  @NonFinal
+  long reserved;
+
+  @Getter
+  @NonFinal
+  File file;
+
+  @NonFinal
+  FileOutputStream fileStream;
+
+  @Getter
+  @NonFinal
+  long length;
+
+  @NonFinal
+  boolean released;
+
+  /**
+   * Creates a body.
+   *
+   * @param memoryThreshold maximum number of bytes, buffered in memory.
+   * @param budget          process-wide memory budget.
+   * @param expectedLength  expected body length, or a negative value, if it is unknown.
+   */
+  public SpillingBody (long memoryThreshold, MemoryBudget budget, long expectedLength) {
+    super();
+    this.memoryThreshold = memoryThreshold;
+    this.budget = budget;
+    if (expectedLength > memoryThreshold) {
+      spill();
+    }
+  }
+
+  /**
+   * Tells if the body is written to the temporary file.
+   *
+   * @return {@code true} if the body has spilled to disk.
+   */
+  public boolean isSpilled () {
+    return file != null;
+  }
+
+  /**
+   * Tells if the body is released (see {@link #release()}).
+   *
+   * @return {@code true} if the body is released.
+   */
+  public boolean isReleased () {
+    return released;
+  }
+
+  @Override
+  @SneakyThrows
+  public void write (int value) {
+    if (!isSpilled() && ensureChunk()) {
+      chunks.get(chunks.size() - 1)[chunkCount++] = (byte) value;
+    } else {
+      fileStream.write(value);
+    }
+    length++;
+  }
+
+  @Override
+  public void write (byte[] bytes, int offset, int count) throws IOException {
+    int from = offset;
+    int remaining = count;
+    while (remaining > 0 && !isSpilled() && ensureChunk()) {
+      val chunk = chunks.get(chunks.size() - 1);
+      val size = Math.min(remaining, chunk.length - chunkCount);
+      System.arraycopy(bytes, from, chunk, chunkCount, size);
+      chunkCount += size;
+      from += size;
+      remaining -= size;
+    }
+    if (remaining > 0) {
+      fileStream.write(bytes, from, remaining);
+    }
+    length += count;
+  }
+
+  /**
+   * Reads the region of the file channel into the body. The spilled body receives
+   * the bytes by a channel to channel transfer.
+   *
+   * @param source   file channel to read from.
+   * @param position the position within the file at which the transfer is to begin.
+   * @param count    the number of bytes to be transferred.
+   *
+   * @throws IOException in case of reading error or if the file is shorter than expected.
+   */
+  public void transferFrom (FileChannel source, long position, long count) throws IOException {
+    val end = position + count;
+    long offset = position;
+    while (offset < end && !isSpilled() && ensureChunk()) {
+      val chunk = chunks.get(chunks.size() - 1);
+      val size = (int) Math.min(end - offset, chunk.length - chunkCount);
+      int read = source.read(ByteBuffer.wrap(chunk, chunkCount, size), offset);
+      checkRead(read, end - offset);
+      chunkCount += read;
+      offset += read;
+      length += read;
+    }
+    if (offset == end) {
+      return;
+    }
+    val channel = fileStream.getChannel();
+    while (offset < end) {
+      long transferred = source.transferTo(offset, end - offset, channel);
+      checkRead(transferred, end - offset);
+      offset += transferred;
+      length += transferred;
+    }
+  }
+
+  /**
+   * Finishes the writing, the body stays readable.
+   *
+   * @throws IOException in case of the file closing error
+   */
+  @Override
+  public void close () throws IOException {
+    if (fileStream != null) {
+      fileStream.close();
+    }
+  }
+
+  @Override
+  public void writeTo (OutputStream outputStream) throws IOException {
+    checkReadable();
+    if (isSpilled()) {
+      writeTo(Channels.newChannel(outputStream));
+      return;
+    }
+    for (int index = 0; index < chunks.size(); index++) {
+      outputStream.write(chunks.get(index), 0, getChunkLength(index));
+    }
+  }
+
+  @Override
+  public void writeTo (WritableByteChannel channel) throws IOException {
+    checkReadable();
+    if (!isSpilled()) {
+      for (int index = 0; index < chunks.size(); index++) {
+        val buffer = ByteBuffer.wrap(chunks.get(index), 0, getChunkLength(index));
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      return;
+    }
+    val inputStream = new FileInputStream(file);
+    try {
+      val source = inputStream.getChannel();
+      long position = 0;
+      while (position < length) {
+        long transferred = source.transferTo(position, length - position, channel);
+        checkRead(transferred, length - position);
+        position += transferred;
+      }
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Override
+  @SneakyThrows
+  public InputStream newInputStream () {
+    checkReadable();
+    if (isSpilled()) {
+      return new FileInputStream(file);
+    }
+    val streams = new ArrayList<InputStream>(chunks.size());
+    for (int index = 0; index < chunks.size(); index++) {
+      streams.add(newInputStream(chunks.get(index), getChunkLength(index)));
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The memory chunks are returned to the pool and the budget, the temporary file is deleted.
+   */
+  @Override
+  public void release () {
+    if (released) {
+      return;
+    }
+    released = true;
+    releaseChunks();
+    if (file != null) {
+      deleteFile();
+    }
+  }
+
+  private static InputStream newInputStream (byte[] chunk, int count) {
+    return new ByteArrayInputStream(chunk, 0, count);
+  }
+
+  private static void checkRead (long read, long expected) throws IOException {
+    if (read <= 0) {
+      throw new IOException("Unexpected end of file channel, " + expected + " bytes are not transferred");
+    }
+  }
+
+  private int getChunkLength (int index) {
+    return index == chunks.size() - 1
+           ? chunkCount
+           : CHUNK_SIZE;
+  }
+
+  /**
+   * Makes sure, that the last chunk has free space, or spills the body.
+   *
+   * @return {@code true} if the body is still in memory.
+   */
+  private boolean ensureChunk () {
+    if (!chunks.isEmpty() && chunkCount < CHUNK_SIZE) {
+      return true;
+    }
+    if (reserved + CHUNK_SIZE > memoryThreshold || !budget.tryReserve(CHUNK_SIZE)) {
+      spill();
+      return false;
+    }
+    reserved += CHUNK_SIZE;
+    chunks.add(BufferPool.SHARED.acquire(CHUNK_SIZE));
+    chunkCount = 0;
+    return true;
+  }
+
+  @SneakyThrows
+  private void spill () {
+    checkReadable();
+    file = File.createTempFile("feign-form-", ".body");
+    fileStream = new FileOutputStream(file);
+    for (int index = 0; index < chunks.size(); index++) {
+      fileStream.write(chunks.get(index), 0, getChunkLength(index));
+    }
+    releaseChunks();
+  }
+
+  @SneakyThrows
+  private void deleteFile () {
+    try {
+      fileStream.close();
+    } finally {
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  private void releaseChunks () {
+    for (byte[] chunk : chunks) {
+      BufferPool.SHARED.release(chunk);
+    }
+    chunks.clear();
+    chunkCount = 0;
+    if (reserved > 0) {
+      budget.release(reserved);
+      reserved = 0;
+    }
+  }
+
+  private void checkReadable () {
+    if (released) {
+      throw new IllegalStateException("The body is already released");
+    }
+  }
+}
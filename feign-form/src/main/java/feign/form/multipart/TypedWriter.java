@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+/**
+ * {@link Writer}, which is able to tell in advance, by the value's class,
+ * whether it could write the value. It allows {@link WriterDispatcher}
+ * to cache the writer's lookup per value class.
+ *
+ * @author Artem Labazin
+ */
+public interface TypedWriter extends Writer {
+
+  /**
+   * Answers on question - "could this writer properly write the values of this type".
+   * <p>
+   * <b>NOTE:</b> the answer must be consistent with {@link #isApplicable(Object)},
+   * so, if you override one of them, override the other too. A subclass, which overrides
+   * only {@link #isApplicable(Object)}, is asked about every value by {@link WriterDispatcher}.
+   *
+   * @param type class of the values to write.
+   *
+   * @return {@link Applicability#ALWAYS} or {@link Applicability#NEVER} if the class alone determines
+   *         the answer, otherwise {@link Applicability#DEPENDS_ON_VALUE}.
+   */
+  Applicability getApplicability (Class<?> type);
+
+  /**
+   * Writer's applicability for a class of values.
+   */
+  enum Applicability {
+
+    /**
+     * The writer could write any value of the class.
+     */
+    ALWAYS,
+
+    /**
+     * The writer couldn't write any value of the class.
+     */
+    NEVER,
+
+    /**
+     * The writer must be asked about every value with {@link Writer#isApplicable(Object)}.
+     */
+    DEPENDS_ON_VALUE;
+
+    /**
+     * Returns {@link #ALWAYS} or {@link #NEVER}.
+     *
+     * @param applicable {@code true} for {@link #ALWAYS}.
+     *
+     * @return applicability enum value.
+     */
+    public static Applicability of (boolean applicable) {
+      return applicable
+             ? ALWAYS
+             : NEVER;
+    }
+  }
+}
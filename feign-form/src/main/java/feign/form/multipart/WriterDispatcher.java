@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.multipart;
+
+import static feign.form.multipart.TypedWriter.Applicability.ALWAYS;
+import static feign.form.multipart.TypedWriter.Applicability.DEPENDS_ON_VALUE;
+import static feign.form.multipart.TypedWriter.Applicability.NEVER;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Ordered set of {@link Writer}s with the lookup cached per value class.
+ * <p>
+ * The writers are held in an immutable snapshot, which is replaced (copy-on-write)
+ * on every modification, so the writers could be added while other threads encode requests.
+ * For every value class the dispatcher remembers which writers must be asked about
+ * the value (see {@link TypedWriter}) and which one writes it unconditionally.
+ * <p>
+ * A {@link TypedWriter}'s answer is trusted only if its class doesn't override
+ * {@link Writer#isApplicable(Object)} below the class, which declares
+ * {@link TypedWriter#getApplicability(Class)}; otherwise the writer is asked about every value.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class WriterDispatcher implements Iterable<Writer> {
+
+  AtomicReference<Snapshot> snapshot;
+
+  /**
+   * Creates dispatcher with the specified writers.
+   *
+   * @param writers initial writers, in the order of priority.
+   */
+  public WriterDispatcher (Writer... writers) {
+    snapshot = new AtomicReference<Snapshot>(new Snapshot(writers.clone()));
+  }
+
+  /**
+   * Finds the first writer, which could write the value.
+   *
+   * @param value value to write.
+   *
+   * @return applicable writer or {@code null} if there is no such writer.
+   */
+  @Nullable
+  public Writer find (@Nullable Object value) {
+    if (value == null) {
+      return null;
+    }
+    return snapshot.get().getDispatch(value.getClass()).find(value);
+  }
+
+  /**
+   * Finds the writer, which writes every value of the class regardless of the value itself.
+   *
+   * @param type values class.
+   *
+   * @return the writer or {@code null} if the writer depends on the value or there is no such writer.
+   */
+  @Nullable
+  public Writer findFor (Class<?> type) {
+    return snapshot.get().getDispatch(type).getUnconditional();
+  }
+
+  /**
+   * Adds the writer at the beginning of the writers list.
+   *
+   * @param writer additional writer.
+   */
+  public void addFirst (Writer writer) {
+    add(writer, true);
+  }
+
+  /**
+   * Adds the writer at the end of the writers list.
+   *
+   * @param writer additional writer.
+   */
+  public void addLast (Writer writer) {
+    add(writer, false);
+  }
+
+  /**
+   * Returns the <b>unmodifiable</b> list of the current writers.
+   *
+   * @return writers list.
+   */
+  public List<Writer> getWriters () {
+    return Collections.unmodifiableList(Arrays.asList(snapshot.get().writers));
+  }
+
+  @Override
+  public Iterator<Writer> iterator () {
+    return getWriters().iterator();
+  }
+
+  private void add (Writer writer, boolean first) {
+    Snapshot current;
+    Snapshot updated;
+    do {
+      current = snapshot.get();
+      updated = current.add(writer, first);
+    } while (!snapshot.compareAndSet(current, updated));
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class Snapshot {
+
+    private static final ConcurrentMap<Class<?>, Boolean> TYPED;
+
+    static {
+      TYPED = new ConcurrentHashMap<Class<?>, Boolean>();
+    }
+
+    Writer[] writers;
+
+    ConcurrentMap<Class<?>, Dispatch> cache = new ConcurrentHashMap<Class<?>, Dispatch>();
+
+    Snapshot add (Writer writer, boolean first) {
+      val result = new Writer[writers.length + 1];
+      if (first) {
+        result[0] = writer;
+        System.arraycopy(writers, 0, result, 1, writers.length);
+      } else {
+        System.arraycopy(writers, 0, result, 0, writers.length);
+        result[writers.length] = writer;
+      }
+      return new Snapshot(result);
+    }
+
+    Dispatch getDispatch (Class<?> type) {
+      val dispatch = cache.get(type);
+      if (dispatch != null) {
+        return dispatch;
+      }
+      val created = createDispatch(type);
+      val previous = cache.putIfAbsent(type, created);
+      return previous == null
+             ? created
+             : previous;
+    }
+
+    private Dispatch createDispatch (Class<?> type) {
+      val dependent = new ArrayList<Writer>(writers.length);
+      for (val writer : writers) {
+        val applicability = isTyped(writer)
+                            ? ((TypedWriter) writer).getApplicability(type)
+                            : DEPENDS_ON_VALUE;
+
+        if (applicability == ALWAYS) {
+          return new Dispatch(dependent.toArray(new Writer[0]), writer);
+        } else if (applicability != NEVER) {
+          dependent.add(writer);
+        }
+      }
+      return new Dispatch(dependent.toArray(new Writer[0]), null);
+    }
+
+    private static boolean isTyped (Writer writer) {
+      if (!(writer instanceof TypedWriter)) {
+        return false;
+      }
+      val type = writer.getClass();
+      val typed = TYPED.get(type);
+      if (typed != null) {
+        return typed;
+      }
+      val checked = isApplicabilityConsistent(type);
+      TYPED.putIfAbsent(type, checked);
+      return checked;
+    }
+
+    @SneakyThrows
+    private static boolean isApplicabilityConsistent (Class<?> type) {
+      val valueCheck = type.getMethod("isApplicable", Object.class).getDeclaringClass();
+      val typeCheck = type.getMethod("getApplicability", Class.class).getDeclaringClass();
+      return valueCheck.isAssignableFrom(typeCheck);
+    }
+  }
+
+  @RequiredArgsConstructor
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class Dispatch {
+
+    Writer[] dependent;
+
+    @Nullable
+    Writer fixed;
+
+    Writer find (Object value) {
+      for (val writer : dependent) {
+        if (writer.isApplicable(value)) {
+          return writer;
+        }
+      }
+      return fixed;
+    }
+
+    Writer getUnconditional () {
+      return dependent.length == 0
+             ? fixed
+             : null;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Bounded pool of byte arrays for the encoders' working buffers.
+ * <p>
+ * The arrays are grouped by size classes - powers of two from 256 bytes up to the pool's
+ * maximum buffer size. {@link #acquire(int)} returns an array of the nearest size class
+ * (not zeroed!), the bigger requests are just allocated. {@link #release(byte[])} puts
+ * the array back, unless its size class is already full. Both operations are lock-free.
+ * <p>
+ * The released array must not be used by its previous owner anymore. The arrays,
+ * which are never released (for example, in case of an exception), are simply garbage collected.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class BufferPool {
+
+  /**
+   * The pool, used by {@link feign.form.multipart.Output} and the content processors.
+   */
+  public static final BufferPool SHARED;
+
+  private static final int MIN_SIZE_SHIFT = 8;
+
+  private static final int MAX_SIZE_SHIFT = 30;
+
+  private static final int DEFAULT_MAX_BUFFERS = 64;
+
+  private static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+
+  static {
+    SHARED = new BufferPool(DEFAULT_MAX_BUFFERS, DEFAULT_MAX_BUFFER_SIZE);
+  }
+
+  SizeClass[] sizeClasses;
+
+  AtomicLong hits = new AtomicLong();
+
+  AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a pool.
+   *
+   * @param maxBuffers    maximum number of the pooled buffers of each size class.
+   * @param maxBufferSize maximum size of the pooled buffers (rounded up to a power of two).
+   */
+  public BufferPool (int maxBuffers, int maxBufferSize) {
+    val count = getSizeClassIndex(Math.max(maxBufferSize, 1)) + 1;
+    if (count > MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1) {
+      throw new IllegalArgumentException("Too big max buffer size: " + maxBufferSize);
+    }
+    sizeClasses = new SizeClass[count];
+    for (int index = 0; index < count; index++) {
+      sizeClasses[index] = createSizeClass(1 << (index + MIN_SIZE_SHIFT), maxBuffers);
+    }
+  }
+
+  private static SizeClass createSizeClass (int size, int capacity) {
+    return new SizeClass(size, capacity);
+  }
+
+  private static int getSizeClassIndex (int size) {
+    return size <= 1 << MIN_SIZE_SHIFT
+           ? 0
+           : Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+  }
+
+  /**
+   * Returns a buffer of at least the requested size. The buffer's content is undefined.
+   *
+   * @param minSize minimum size of the buffer.
+   *
+   * @return pooled or newly allocated buffer.
+   */
+  public byte[] acquire (int minSize) {
+    val index = getSizeClassIndex(minSize);
+    if (index >= sizeClasses.length) {
+      misses.incrementAndGet();
+      return new byte[minSize];
+    }
+    val sizeClass = sizeClasses[index];
+    val buffer = sizeClass.poll();
+    if (buffer != null) {
+      hits.incrementAndGet();
+      return buffer;
+    }
+    misses.incrementAndGet();
+    return new byte[sizeClass.getSize()];
+  }
+
+  /**
+   * Returns the buffer to the pool. The buffers, which are not of a size class, are ignored.
+   *
+   * @param buffer buffer, acquired from this pool.
+   */
+  public void release (byte[] buffer) {
+    val index = getSizeClassIndex(buffer.length);
+    if (index < sizeClasses.length && sizeClasses[index].getSize() == buffer.length) {
+      sizeClasses[index].offer(buffer);
+    }
+  }
+
+  /**
+   * Returns the number of the {@link #acquire(int)} calls, served by the pooled buffers.
+   *
+   * @return hits count.
+   */
+  public long getHitCount () {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of the {@link #acquire(int)} calls, which allocated new buffers.
+   *
+   * @return misses count.
+   */
+  public long getMissCount () {
+    return misses.get();
+  }
+
+  /**
+   * Returns the share of the {@link #acquire(int)} calls, served by the pooled buffers.
+   *
+   * @return hit rate from 0 to 1, or 0 if there were no calls.
+   */
+  public double getHitRate () {
+    val hitCount = getHitCount();
+    val total = hitCount + getMissCount();
+    return total == 0
+           ? 0
+           : (double) hitCount / total;
+  }
+
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class SizeClass {
+
+    @Getter
+    int size;
+
+    int capacity;
+
+    Queue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+
+    AtomicInteger count = new AtomicInteger();
+
+    SizeClass (int size, int capacity) {
+      this.size = size;
+      this.capacity = capacity;
+    }
+
+    byte[] poll () {
+      val buffer = buffers.poll();
+      if (buffer != null) {
+        count.decrementAndGet();
+      }
+      return buffer;
+    }
+
+    void offer (byte[] buffer) {
+      if (count.incrementAndGet() > capacity) {
+        count.decrementAndGet();
+        return;
+      }
+      if (!buffers.offer(buffer)) {
+        count.decrementAndGet();
+      }
+    }
+  }
+}
@@ -18,6 +18,9 @@ package feign.form.util;
 
 import java.nio.charset.Charset;
 import java.rmi.UnexpectedException;
+import java.util.Arrays;
+
+import lombok.val;
 
 /**
  *
@@ -27,6 +30,25 @@ public final class CharsetUtil {
 
   public static final Charset UTF_8 = Charset.forName("UTF-8");
 
+  private static final int ASCII_SIZE = 128;
+
+  /**
+   * Checks, if the charset encodes every ASCII character as the same single byte.
+   *
+   * @param charset charset to check.
+   *
+   * @return {@code true} if ASCII characters could be copied to the output as is.
+   */
+  public static boolean isAsciiCompatible (Charset charset) {
+    val ascii = new char[ASCII_SIZE];
+    val expected = new byte[ASCII_SIZE];
+    for (int index = 0; index < ASCII_SIZE; index++) {
+      ascii[index] = (char) index;
+      expected[index] = (byte) index;
+    }
+    return Arrays.equals(expected, new String(ascii).getBytes(charset));
+  }
+
   private CharsetUtil () throws UnexpectedException {
     throw new UnexpectedException("It is not allowed to instantiate this class");
   }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Bounded pool of the same size direct {@link ByteBuffer}s, used as the segments of the off-heap bodies.
+ * <p>
+ * Direct buffers are expensive to allocate and are freed only after garbage collection,
+ * so the released segments are kept for reuse, up to the pool's capacity. Both operations are lock-free.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class DirectBufferPool {
+
+  /**
+   * The pool, used by {@link feign.form.multipart.DirectBody}.
+   */
+  public static final DirectBufferPool SHARED;
+
+  private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+  private static final int DEFAULT_MAX_SEGMENTS = 256;
+
+  static {
+    SHARED = new DirectBufferPool(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+  }
+
+  @Getter
+  int segmentSize;
+
+  int maxSegments;
+
+  Queue<ByteBuffer> segments = new ConcurrentLinkedQueue<ByteBuffer>();
+
+  AtomicInteger count = new AtomicInteger();
+
+  AtomicLong hits = new AtomicLong();
+
+  AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a pool.
+   *
+   * @param segmentSize size of the pooled buffers.
+   * @param maxSegments maximum number of the pooled buffers.
+   */
+  public DirectBufferPool (int segmentSize, int maxSegments) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+    }
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+  }
+
+  /**
+   * Returns a cleared direct buffer of the pool's segment size. The buffer's content is undefined.
+   *
+   * @return pooled or newly allocated buffer.
+   */
+  public ByteBuffer acquire () {
+    val segment = segments.poll();
+    if (segment == null) {
+      misses.incrementAndGet();
+      return ByteBuffer.allocateDirect(segmentSize);
+    }
+    count.decrementAndGet();
+    hits.incrementAndGet();
+    segment.clear();
+    return segment;
+  }
+
+  /**
+   * Returns the buffer to the pool. The buffers of another size or heap buffers are ignored.
+   *
+   * @param segment buffer, acquired from this pool.
+   */
+  public void release (ByteBuffer segment) {
+    if (!segment.isDirect() || segment.capacity() != segmentSize) {
+      return;
+    }
+    if (count.incrementAndGet() > maxSegments) {
+      count.decrementAndGet();
+      return;
+    }
+    if (!segments.offer(segment)) {
+      count.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the number of the {@link #acquire()} calls, served by the pooled buffers.
+   *
+   * @return hits count.
+   */
+  public long getHitCount () {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of the {@link #acquire()} calls, which allocated new buffers.
+   *
+   * @return misses count.
+   */
+  public long getMissCount () {
+    return misses.get();
+  }
+}
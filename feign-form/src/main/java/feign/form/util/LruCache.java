@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Bounded thread-safe cache, which evicts the least recently used entries.
+ * <p>
+ * The caches of the values, computed from the request data (headers, keys, etc.), must be bounded
+ * and must adapt to the values, which are actually used, so the one-time values (boundaries,
+ * indexed keys, etc.) don't displace the recurring ones forever.
+ * <p>
+ * The big caches are lock-striped: the entries are split into segments by the keys' hashes,
+ * each segment has its own lock and evicts its own least recently used entries,
+ * so the concurrent requests rarely wait for each other and the eviction order is approximate.
+ *
+ * @param <K> keys type.
+ * @param <V> values type.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class LruCache<K, V> {
+
+  private static final int MAX_SEGMENTS = 16;
+
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  List<Map<K, V>> segments;
+
+  int mask;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxSize maximum number of the cached entries.
+   */
+  public LruCache (int maxSize) {
+    val count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+    segments = new ArrayList<Map<K, V>>(count);
+    for (int index = 0; index < count; index++) {
+      segments.add(LruCache.<K, V>createSegment(maxSize / count));
+    }
+    mask = count - 1;
+  }
+
+  private static <K, V> Map<K, V> createSegment (int maxSize) {
+    return new BoundedMap<K, V>(maxSize);
+  }
+
+  /**
+   * Returns the cached value and marks it as recently used.
+   *
+   * @param key value's key.
+   *
+   * @return cached value or {@code null} if there is no such value.
+   */
+  @Nullable
+  public V get (K key) {
+    val segment = getSegment(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  /**
+   * Caches the value, if there is no value for the key yet.
+   *
+   * @param key   value's key.
+   * @param value new value.
+   *
+   * @return the already cached value or the new one.
+   */
+  public V putIfAbsent (K key, V value) {
+    val segment = getSegment(key);
+    synchronized (segment) {
+      val previous = segment.get(key);
+      if (previous != null) {
+        return previous;
+      }
+      segment.put(key, value);
+      return value;
+    }
+  }
+
+  /**
+   * Returns the number of the cached entries.
+   *
+   * @return cache size.
+   */
+  public int size () {
+    int result = 0;
+    for (val segment : segments) {
+      synchronized (segment) {
+        result += segment.size();
+      }
+    }
+    return result;
+  }
+
+  private Map<K, V> getSegment (K key) {
+    int hash = key.hashCode();
+    // the strings' hashes differ mostly in the low bits, the high ones are mixed in anyway
+    hash ^= hash >>> 16;
+    return segments.get(hash & mask);
+  }
+
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
+    int maxSize;
+
+    BoundedMap (int maxSize) {
+      // access order, the eldest entry is the least recently used one
+      super(16, LOAD_FACTOR, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry (Map.Entry<K, V> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Process-wide limit of the memory, which the encoded bodies may hold
+ * (see {@link feign.form.multipart.SpillingBody}). The bodies, which don't fit the budget, are spilled to disk.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class MemoryBudget {
+
+  /**
+   * The budget, used by {@link feign.form.MultipartFormContentProcessor}.
+   */
+  public static final MemoryBudget SHARED;
+
+  private static final long DEFAULT_LIMIT = 64L * 1024 * 1024;
+
+  static {
+    SHARED = new MemoryBudget(DEFAULT_LIMIT);
+  }
+
+  AtomicLong reserved = new AtomicLong();
+
+  AtomicLong limit;
+
+  /**
+   * Creates a budget.
+   *
+   * @param limit maximum number of the reserved bytes.
+   */
+  public MemoryBudget (long limit) {
+    this.limit = new AtomicLong(limit);
+  }
+
+  /**
+   * Reserves the bytes, if the budget allows it.
+   *
+   * @param bytes number of bytes to reserve.
+   *
+   * @return {@code true} if the bytes are reserved and must be {@link #release(long) released} later.
+   */
+  public boolean tryReserve (long bytes) {
+    long current = reserved.get();
+    while (current + bytes <= limit.get()) {
+      if (reserved.compareAndSet(current, current + bytes)) {
+        return true;
+      }
+      current = reserved.get();
+    }
+    return false;
+  }
+
+  /**
+   * Returns the reserved bytes to the budget.
+   *
+   * @param bytes number of bytes, previously reserved by {@link #tryReserve(long)}.
+   */
+  public void release (long bytes) {
+    val left = reserved.addAndGet(-bytes);
+    if (left < 0) {
+      throw new IllegalStateException("Released more than reserved: " + bytes);
+    }
+  }
+
+  /**
+   * Returns the number of the currently reserved bytes.
+   *
+   * @return reserved bytes.
+   */
+  public long getReserved () {
+    return reserved.get();
+  }
+
+  /**
+   * Returns the maximum number of the reserved bytes.
+   *
+   * @return budget's limit.
+   */
+  public long getLimit () {
+    return limit.get();
+  }
+
+  /**
+   * Sets the maximum number of the reserved bytes. The already reserved bytes are not affected.
+   *
+   * @param limit budget's limit.
+   */
+  public void setLimit (long limit) {
+    this.limit.set(limit);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import java.rmi.UnexpectedException;
+
+import lombok.val;
+
+/**
+ * Number formatting utilities, which don't allocate strings.
+ *
+ * @author Artem Labazin
+ */
+public final class NumberUtil {
+
+  /**
+   * The maximum length of a decimal {@code long}: 19 digits and the sign.
+   */
+  public static final int MAX_LONG_LENGTH = 20;
+
+  private static final int RADIX = 10;
+
+  private static final int MAX_LONG_DIGITS = 19;
+
+  private static final byte[] MIN_LONG_BYTES = Long.toString(Long.MIN_VALUE).getBytes(CharsetUtil.UTF_8);
+
+  /**
+   * Writes the decimal ASCII representation of the number (the same as {@link Long#toString(long)}) to the array.
+   *
+   * @param value  number to write.
+   * @param target destination array, must have at least {@link #MAX_LONG_LENGTH} bytes after the offset.
+   * @param offset position in the array to start from.
+   *
+   * @return number of the written bytes.
+   */
+  public static int writeDecimal (long value, byte[] target, int offset) {
+    if (value == Long.MIN_VALUE) {
+      System.arraycopy(MIN_LONG_BYTES, 0, target, offset, MIN_LONG_BYTES.length);
+      return MIN_LONG_BYTES.length;
+    }
+
+    val negative = value < 0;
+    long remaining = negative
+                     ? -value
+                     : value;
+    val length = negative
+                 ? countDigits(remaining) + 1
+                 : countDigits(remaining);
+
+    int position = offset + length;
+    do {
+      target[--position] = (byte) ('0' + remaining % RADIX);
+      remaining /= RADIX;
+    } while (remaining != 0);
+
+    if (negative) {
+      target[offset] = '-';
+    }
+    return length;
+  }
+
+  private static int countDigits (long value) {
+    int count = 1;
+    long limit = RADIX;
+    while (count < MAX_LONG_DIGITS && value >= limit) {
+      count++;
+      limit *= RADIX;
+    }
+    return count;
+  }
+
+  private NumberUtil () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+}
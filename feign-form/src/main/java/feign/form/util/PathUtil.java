@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.UnexpectedException;
+
+import javax.annotation.Nullable;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * Utility methods for {@code java.nio.file.Path} values.
+ * <p>
+ * The module is compatible with Java 6, so the class is accessed reflectively
+ * and all methods just return {@code false} on older runtimes.
+ *
+ * @author Artem Labazin
+ */
+public final class PathUtil {
+
+  @Nullable
+  private static final Class<?> PATH_CLASS;
+
+  @Nullable
+  private static final Method TO_FILE_METHOD;
+
+  static {
+    PATH_CLASS = findPathClass();
+    TO_FILE_METHOD = findToFileMethod(PATH_CLASS);
+  }
+
+  /**
+   * Tells if the value is a {@code java.nio.file.Path} instance.
+   *
+   * @param value value to check.
+   *
+   * @return {@code true} if the value is a path.
+   */
+  public static boolean isPath (Object value) {
+    return TO_FILE_METHOD != null && PATH_CLASS.isInstance(value);
+  }
+
+  /**
+   * Tells if the value is an array of {@code java.nio.file.Path}.
+   *
+   * @param value value to check.
+   *
+   * @return {@code true} if the value is an array of paths.
+   */
+  public static boolean isPathArray (@NonNull Object value) {
+    val type = value.getClass();
+    return type.isArray() && isPathType(type.getComponentType());
+  }
+
+  /**
+   * Tells if the type is {@code java.nio.file.Path} or its subtype.
+   *
+   * @param type type to check.
+   *
+   * @return {@code true} if the type is a path type.
+   */
+  public static boolean isPathType (@NonNull Class<?> type) {
+    return TO_FILE_METHOD != null && PATH_CLASS.isAssignableFrom(type);
+  }
+
+  /**
+   * Converts {@code java.nio.file.Path} to the {@link File}.
+   * Only the default file system's paths are supported.
+   *
+   * @param path {@code java.nio.file.Path} instance.
+   *
+   * @return file, located by the path.
+   */
+  @SneakyThrows
+  public static File toFile (@NonNull Object path) {
+    if (!isPath(path)) {
+      throw new IllegalArgumentException("Not a java.nio.file.Path instance: " + path.getClass());
+    }
+    try {
+      return (File) TO_FILE_METHOD.invoke(path);
+    } catch (InvocationTargetException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @Nullable
+  private static Class<?> findPathClass () {
+    try {
+      return Class.forName("java.nio.file.Path");
+    } catch (ClassNotFoundException ex) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method findToFileMethod (@Nullable Class<?> pathClass) {
+    if (pathClass == null) {
+      return null;
+    }
+    try {
+      return pathClass.getMethod("toFile");
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  private PathUtil () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+}
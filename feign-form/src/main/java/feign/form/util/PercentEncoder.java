@@ -0,0 +1,315 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static feign.form.util.NumberUtil.MAX_LONG_LENGTH;
+import static feign.form.util.NumberUtil.writeDecimal;
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.val;
+
+/**
+ * Table-driven {@code application/x-www-form-urlencoded} body builder.
+ * <p>
+ * Produces the same bytes as {@link URLEncoder} followed by {@link String#getBytes(Charset)},
+ * but writes them straight into a growable byte array. The encoded keys are cached
+ * per charset, as the same forms are sent again and again. The cache is bounded, lock-striped and evicts the least
+ * recently used keys (see {@link LruCache}), so the one-time keys (like the flattened {@code items[N]}) don't
+ * displace the recurring ones.
+ * The working array is taken from {@link BufferPool#SHARED}, see {@link #release()}.
+ * <p>
+ * The charsets, which don't encode ASCII characters as is (like UTF-16), are rare here,
+ * so they simply go through {@link URLEncoder} and the whole (ASCII) text is re-encoded at the end.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class PercentEncoder {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final int ENCODER_BUFFER_SIZE = 64;
+
+  private static final int MAX_ENCODED_SIZE = 3;
+
+  private static final char ASCII_LIMIT = 0x80;
+
+  private static final byte DELIMITER = '&';
+
+  private static final byte EQUAL_SIGN = '=';
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+  private static final byte[] HEX_DIGITS = {
+      '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+  };
+
+  /**
+   * ASCII characters, which are not percent-encoded, mapped to their bytes (zero for the others).
+   */
+  private static final byte[] SAFE_BYTES;
+
+  static {
+    SAFE_BYTES = new byte[ASCII_LIMIT];
+    for (val character : "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.-*_".toCharArray()) {
+      SAFE_BYTES[character] = (byte) character;
+    }
+    SAFE_BYTES[' '] = '+';
+  }
+
+  Charset charset;
+
+  Encoding encoding;
+
+  @NonFinal
+  byte[] buffer;
+
+  @NonFinal
+  int size;
+
+  @NonFinal
+  CharsetEncoder charsetEncoder;
+
+  @NonFinal
+  ByteBuffer encoderBuffer;
+
+  /**
+   * Constructor with charset.
+   *
+   * @param charset charset of the encoded data.
+   */
+  public PercentEncoder (Charset charset) {
+    this.charset = charset;
+    encoding = Encoding.of(charset);
+    buffer = BufferPool.SHARED.acquire(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Appends {@code key=value} pair, separated from the previous one by {@code &}.
+   *
+   * @param key   the key, it is encoded and cached.
+   * @param value the value, its {@code toString()} is encoded; if it is {@code null}, only the key is appended.
+   *
+   * @return this encoder.
+   */
+  public PercentEncoder appendPair (String key, @Nullable Object value) {
+    appendKey(key);
+    if (value != null) {
+      ensureCapacity(1);
+      buffer[size++] = EQUAL_SIGN;
+      appendEncoded(value.toString());
+    }
+    return this;
+  }
+
+  /**
+   * Appends {@code key=number} pair, separated from the previous one by {@code &}.
+   * The number's digits are written directly, without intermediate string.
+   *
+   * @param key    the key, it is encoded and cached.
+   * @param number the value.
+   *
+   * @return this encoder.
+   */
+  public PercentEncoder appendPair (String key, long number) {
+    appendKey(key);
+    ensureCapacity(1 + MAX_LONG_LENGTH);
+    buffer[size++] = EQUAL_SIGN;
+    size += writeDecimal(number, buffer, size);
+    return this;
+  }
+
+  /**
+   * Returns the encoded data.
+   *
+   * @return a copy of the encoded bytes.
+   */
+  public byte[] toByteArray () {
+    return encoding.isAsciiCompatible()
+           ? Arrays.copyOf(buffer, size)
+           : new String(buffer, 0, size, US_ASCII).getBytes(charset);
+  }
+
+  /**
+   * Returns the encoder's working buffer to the {@link BufferPool}.
+   * The encoder must not be used after that.
+   */
+  public void release () {
+    BufferPool.SHARED.release(buffer);
+    buffer = EMPTY;
+    size = 0;
+  }
+
+  private void appendKey (String key) {
+    if (size > 0) {
+      ensureCapacity(1);
+      buffer[size++] = DELIMITER;
+    }
+    write(getEncodedKey(key));
+  }
+
+  private byte[] getEncodedKey (String key) {
+    val keys = encoding.getKeys();
+    val cached = keys.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    val encoder = new PercentEncoder(charset).appendEncoded(key);
+    val encoded = Arrays.copyOf(encoder.buffer, encoder.size);
+    encoder.release();
+    return keys.putIfAbsent(key, encoded);
+  }
+
+  @SneakyThrows
+  private PercentEncoder appendEncoded (String string) {
+    if (!encoding.isAsciiCompatible()) {
+      write(URLEncoder.encode(string, charset.name()).getBytes(US_ASCII));
+      return this;
+    }
+
+    val length = string.length();
+    int index = 0;
+    while (index < length) {
+      val character = string.charAt(index);
+      if (character >= ASCII_LIMIT) {
+        index = appendNonAscii(string, index);
+        continue;
+      }
+      ensureCapacity(MAX_ENCODED_SIZE);
+      val safe = SAFE_BYTES[character];
+      if (safe == 0) {
+        appendHex(character);
+      } else {
+        buffer[size++] = safe;
+      }
+      index++;
+    }
+    return this;
+  }
+
+  private int appendNonAscii (String string, int from) {
+    val length = string.length();
+    int end = from;
+    while (end < length && string.charAt(end) >= ASCII_LIMIT) {
+      end++;
+    }
+
+    if (charsetEncoder == null) {
+      charsetEncoder = charset.newEncoder()
+          .onMalformedInput(REPLACE)
+          .onUnmappableCharacter(REPLACE);
+      encoderBuffer = ByteBuffer.allocate(ENCODER_BUFFER_SIZE);
+    }
+    charsetEncoder.reset();
+    val input = CharBuffer.wrap(string, from, end);
+    CoderResult result = charsetEncoder.encode(input, encoderBuffer, true);
+    while (result.isOverflow()) {
+      drainEncoderBuffer();
+      result = charsetEncoder.encode(input, encoderBuffer, true);
+    }
+    result = charsetEncoder.flush(encoderBuffer);
+    while (result.isOverflow()) {
+      drainEncoderBuffer();
+      result = charsetEncoder.flush(encoderBuffer);
+    }
+    drainEncoderBuffer();
+    return end;
+  }
+
+  private void drainEncoderBuffer () {
+    encoderBuffer.flip();
+    ensureCapacity(encoderBuffer.remaining() * MAX_ENCODED_SIZE);
+    while (encoderBuffer.hasRemaining()) {
+      appendHex(encoderBuffer.get());
+    }
+    encoderBuffer.clear();
+  }
+
+  private void appendHex (int value) {
+    buffer[size++] = '%';
+    buffer[size++] = HEX_DIGITS[(value >> 4) & 0xF];
+    buffer[size++] = HEX_DIGITS[value & 0xF];
+  }
+
+  private void write (byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  private void ensureCapacity (int length) {
+    val required = size + length;
+    if (required < 0) {
+      throw new OutOfMemoryError();
+    }
+    if (required > buffer.length) {
+      val grown = BufferPool.SHARED.acquire(Math.max(buffer.length << 1, required));
+      System.arraycopy(buffer, 0, grown, 0, size);
+      BufferPool.SHARED.release(buffer);
+      buffer = grown;
+    }
+  }
+
+  @Getter
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class Encoding {
+
+    private static final int MAX_CACHED_KEYS = 4096;
+
+    private static final ConcurrentMap<Charset, Encoding> ENCODINGS = new ConcurrentHashMap<Charset, Encoding>();
+
+    static Encoding of (Charset charset) {
+      val encoding = ENCODINGS.get(charset);
+      if (encoding != null) {
+        return encoding;
+      }
+      val created = new Encoding(charset);
+      val previous = ENCODINGS.putIfAbsent(charset, created);
+      return previous == null
+             ? created
+             : previous;
+    }
+
+    boolean asciiCompatible;
+
+    LruCache<String, byte[]> keys;
+
+    Encoding (Charset charset) {
+      asciiCompatible = CharsetUtil.isAsciiCompatible(charset);
+      keys = new LruCache<String, byte[]>(MAX_CACHED_KEYS);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.lang.reflect.Field;
+
+import javax.annotation.Nullable;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A POJO's form property - its name and the way to read its value.
+ * <p>
+ * The reflective properties (fields) are resolved and made accessible once, see {@link PojoUtil#getProperties(Class)}.
+ * The generated {@link PojoSerializer}s extend this class and read the values without reflection.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public abstract class PojoProperty {
+
+  @Getter
+  String name;
+
+  /**
+   * Constructor with property name.
+   *
+   * @param name name of the form property.
+   */
+  protected PojoProperty (String name) {
+    this.name = name;
+  }
+
+  static PojoProperty of (String name, Field field) {
+    return new FieldProperty(name, field);
+  }
+
+  /**
+   * Returns the property's value.
+   *
+   * @param object the POJO.
+   *
+   * @return property's value, may be {@code null}.
+   */
+  @Nullable
+  public abstract Object getValue (Object object);
+
+  @FieldDefaults(level = PRIVATE, makeFinal = true)
+  private static final class FieldProperty extends PojoProperty {
+
+    Field field;
+
+    FieldProperty (String name, Field field) {
+      super(name);
+      this.field = field;
+    }
+
+    @Override
+    @SneakyThrows
+    public Object getValue (Object object) {
+      return field.get(object);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import java.util.List;
+
+/**
+ * Serializer of a POJO class to the form properties, which doesn't use reflection.
+ * <p>
+ * The implementations are generated at compile time by {@code feign-form-processor}
+ * and registered in {@code META-INF/services/feign.form.util.PojoSerializer}.
+ * {@link PojoUtil} picks them up with {@link java.util.ServiceLoader}.
+ *
+ * @author Artem Labazin
+ */
+public interface PojoSerializer {
+
+  /**
+   * Returns the serialized POJO class.
+   *
+   * @return POJO class.
+   */
+  Class<?> getType ();
+
+  /**
+   * Returns the class's form properties, in the order of the fields declaration.
+   *
+   * @return <b>unmodifiable</b> list of the properties.
+   */
+  List<PojoProperty> getProperties ();
+}
@@ -20,13 +20,21 @@ import static java.lang.reflect.Modifier.isFinal;
 import static java.lang.reflect.Modifier.isStatic;
 import static lombok.AccessLevel.PRIVATE;
 
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.rmi.UnexpectedException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 
 import javax.annotation.Nullable;
 
@@ -35,16 +43,26 @@ import feign.form.FormProperty;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.Setter;
-import lombok.SneakyThrows;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
 /**
  *
  * @author Artem Labazin
  */
+@Slf4j
 public final class PojoUtil {
 
+  private static final WeakCache<Class<?>, List<PojoProperty>> PROPERTIES;
+
+  private static final WeakCache<ClassLoader, Map<Class<?>, PojoSerializer>> SERIALIZERS;
+
+  static {
+    PROPERTIES = new WeakCache<Class<?>, List<PojoProperty>>();
+    SERIALIZERS = new WeakCache<ClassLoader, Map<Class<?>, PojoSerializer>>();
+  }
+
   public static boolean isUserPojo (@NonNull Object object) {
     val type = object.getClass();
     val packageName = type.getPackage().getName();
@@ -56,33 +74,110 @@ public final class PojoUtil {
     return !typeName.startsWith("class java.");
   }
 
-  @SneakyThrows
+  /**
+   * Collects POJO's non-null property values to the map, in the order of the fields declaration.
+   *
+   * @param object the POJO.
+   *
+   * @return property names to values map.
+   */
   public static Map<String, Object> toMap (@NonNull Object object) {
-    val result = new HashMap<String, Object>();
-    val type = object.getClass();
+    val properties = getProperties(object.getClass());
+    val result = new LinkedHashMap<String, Object>(properties.size() * 4 / 3 + 1);
+    for (val property : properties) {
+      val value = property.getValue(object);
+      if (value != null) {
+        result.put(property.getName(), value);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the class's form properties, in the order of the fields declaration.
+   * <p>
+   * If there is a generated {@link PojoSerializer} for the class, its properties are used.
+   * Otherwise, every non-static and non-final field is a property (named by {@link FormProperty}
+   * or by the field's name), its value is read from the field.
+   * The result is computed once per class, the cache doesn't prevent the class from unloading.
+   *
+   * @param type POJO's class.
+   *
+   * @return <b>unmodifiable</b> list of the properties.
+   */
+  public static List<PojoProperty> getProperties (@NonNull Class<?> type) {
+    val properties = PROPERTIES.get(type);
+    if (properties != null) {
+      return properties;
+    }
+    return PROPERTIES.putIfAbsent(type, createProperties(type));
+  }
+
+  private static List<PojoProperty> createProperties (Class<?> type) {
+    val serializer = findSerializer(type);
+    if (serializer != null) {
+      return serializer.getProperties();
+    }
+
     val setAccessibleAction = new SetAccessibleAction();
-    for (val field : type.getDeclaredFields()) {
+    val result = new ArrayList<PojoProperty>();
+    for (Field field : type.getDeclaredFields()) {
       val modifiers = field.getModifiers();
       if (isFinal(modifiers) || isStatic(modifiers)) {
         continue;
       }
-      setAccessibleAction.setField(field);
-      AccessController.doPrivileged(setAccessibleAction);
-
-      val fieldValue = field.get(object);
-      if (fieldValue == null) {
-        continue;
-      }
 
       val propertyKey = field.isAnnotationPresent(FormProperty.class)
                         ? field.getAnnotation(FormProperty.class).value()
                         : field.getName();
 
-      result.put(propertyKey, fieldValue);
+      setAccessibleAction.setObject(field);
+      AccessController.doPrivileged(setAccessibleAction);
+      result.add(PojoProperty.of(propertyKey, field));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  @Nullable
+  private static PojoSerializer findSerializer (Class<?> type) {
+    ClassLoader classLoader = type.getClassLoader();
+    if (classLoader == null) {
+      return null;
+    }
+    Map<Class<?>, PojoSerializer> serializers = SERIALIZERS.get(classLoader);
+    if (serializers == null) {
+      serializers = SERIALIZERS.putIfAbsent(classLoader, loadSerializers(classLoader));
+    }
+    return serializers.get(type);
+  }
+
+  private static Map<Class<?>, PojoSerializer> loadSerializers (ClassLoader classLoader) {
+    val result = new HashMap<Class<?>, PojoSerializer>();
+    Iterator<PojoSerializer> iterator = ServiceLoader.load(PojoSerializer.class, classLoader).iterator();
+    while (hasNext(iterator)) {
+      try {
+        val serializer = iterator.next();
+        result.put(serializer.getType(), serializer);
+      } catch (ServiceConfigurationError ex) {
+        // a stale entry (for example, of a removed class), its class is serialized via reflection
+        log.warn("Unable to load POJO serializer, the reflection is used instead", ex);
+      } catch (LinkageError ex) {
+        // the serializer of a removed class
+        log.warn("Unable to load POJO serializer, the reflection is used instead", ex);
+      }
     }
     return result;
   }
 
+  private static boolean hasNext (Iterator<PojoSerializer> iterator) {
+    try {
+      return iterator.hasNext();
+    } catch (ServiceConfigurationError ex) {
+      log.warn("Unable to read POJO serializers list, the rest of them are ignored", ex);
+      return false;
+    }
+  }
+
   private PojoUtil () throws UnexpectedException {
     throw new UnexpectedException("It is not allowed to instantiate this class");
   }
@@ -93,11 +188,11 @@ public final class PojoUtil {
   private static class SetAccessibleAction implements PrivilegedAction<Object> {
 
     @Nullable
-    Field field;
+    AccessibleObject object;
 
     @Override
     public Object run () {
-      field.setAccessible(true);
+      object.setAccessible(true);
       return null;
     }
   }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import java.rmi.UnexpectedException;
+
+/**
+ * Iteration over primitive arrays without boxing their elements.
+ *
+ * @author Artem Labazin
+ */
+public final class PrimitiveArrayUtil {
+
+  /**
+   * Tells if the type is an array of primitives.
+   *
+   * @param type type to check.
+   *
+   * @return {@code true} if the type is a primitive array, like {@code int[]}.
+   */
+  public static boolean isPrimitiveArray (Class<?> type) {
+    return type.isArray() && type.getComponentType().isPrimitive();
+  }
+
+  /**
+   * Passes each element of the primitive array to the visitor. Integral elements
+   * ({@code byte}, {@code short}, {@code int} and {@code long}) are widened to {@code long}.
+   *
+   * @param array   primitive array.
+   * @param visitor elements visitor.
+   *
+   * @throws IllegalArgumentException if the value is not a primitive array.
+   */
+  @SuppressWarnings("PMD.CyclomaticComplexity")
+  public static void forEach (Object array, ElementVisitor visitor) {
+    if (array instanceof int[]) {
+      for (int element : (int[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof long[]) {
+      for (long element : (long[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof double[]) {
+      for (double element : (double[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof short[]) {
+      for (short element : (short[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof byte[]) {
+      for (byte element : (byte[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof float[]) {
+      for (float element : (float[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof boolean[]) {
+      for (boolean element : (boolean[]) array) {
+        visitor.visit(element);
+      }
+    } else if (array instanceof char[]) {
+      for (char element : (char[]) array) {
+        visitor.visit(element);
+      }
+    } else {
+      throw new IllegalArgumentException("Not a primitive array: " + array);
+    }
+  }
+
+  /**
+   * Visitor of primitive array elements.
+   */
+  public interface ElementVisitor {
+
+    /**
+     * Visits integral element.
+     *
+     * @param element array element.
+     */
+    void visit (long element);
+
+    /**
+     * Visits {@code float} element.
+     *
+     * @param element array element.
+     */
+    void visit (float element);
+
+    /**
+     * Visits {@code double} element.
+     *
+     * @param element array element.
+     */
+    void visit (double element);
+
+    /**
+     * Visits {@code boolean} element.
+     *
+     * @param element array element.
+     */
+    void visit (boolean element);
+
+    /**
+     * Visits {@code char} element.
+     *
+     * @param element array element.
+     */
+    void visit (char element);
+  }
+
+  private PrimitiveArrayUtil () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+}
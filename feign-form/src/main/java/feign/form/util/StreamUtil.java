@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.UnexpectedException;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+/**
+ * Utility methods for {@code java.util.stream.Stream} values (and the other {@code BaseStream}s).
+ * <p>
+ * The module is compatible with Java 6, so the streams are accessed reflectively
+ * and all methods just return {@code false} on older runtimes.
+ *
+ * @author Artem Labazin
+ */
+public final class StreamUtil {
+
+  @Nullable
+  private static final Class<?> STREAM_CLASS;
+
+  @Nullable
+  private static final Method ITERATOR_METHOD;
+
+  @Nullable
+  private static final Method CLOSE_METHOD;
+
+  static {
+    STREAM_CLASS = findStreamClass();
+    ITERATOR_METHOD = findMethod(STREAM_CLASS, "iterator");
+    CLOSE_METHOD = findMethod(STREAM_CLASS, "close");
+  }
+
+  /**
+   * Tells if the value is a {@code java.util.stream.BaseStream} instance.
+   *
+   * @param value value to check.
+   *
+   * @return {@code true} if the value is a stream.
+   */
+  public static boolean isStream (Object value) {
+    return ITERATOR_METHOD != null && STREAM_CLASS.isInstance(value);
+  }
+
+  /**
+   * Tells if the type is {@code java.util.stream.BaseStream} or its subtype.
+   *
+   * @param type type to check.
+   *
+   * @return {@code true} if the type is a stream type.
+   */
+  public static boolean isStreamType (@NonNull Class<?> type) {
+    return ITERATOR_METHOD != null && STREAM_CLASS.isAssignableFrom(type);
+  }
+
+  /**
+   * Returns the stream's lazy iterator, it is a terminal operation.
+   *
+   * @param stream {@code java.util.stream.BaseStream} instance.
+   *
+   * @return stream's elements iterator.
+   */
+  @SneakyThrows
+  public static Iterator<?> iterator (@NonNull Object stream) {
+    if (!isStream(stream)) {
+      throw new IllegalArgumentException("Not a java.util.stream.BaseStream instance: " + stream.getClass());
+    }
+    try {
+      return (Iterator<?>) ITERATOR_METHOD.invoke(stream);
+    } catch (InvocationTargetException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Closes the stream (and runs its close handlers).
+   *
+   * @param stream {@code java.util.stream.BaseStream} instance.
+   */
+  @SneakyThrows
+  public static void close (@NonNull Object stream) {
+    if (!isStream(stream)) {
+      throw new IllegalArgumentException("Not a java.util.stream.BaseStream instance: " + stream.getClass());
+    }
+    try {
+      CLOSE_METHOD.invoke(stream);
+    } catch (InvocationTargetException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @Nullable
+  private static Class<?> findStreamClass () {
+    try {
+      return Class.forName("java.util.stream.BaseStream");
+    } catch (ClassNotFoundException ex) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static Method findMethod (@Nullable Class<?> streamClass, String name) {
+    if (streamClass == null) {
+      return null;
+    }
+    try {
+      return streamClass.getMethod(name);
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  private StreamUtil () throws UnexpectedException {
+    throw new UnexpectedException("It is not allowed to instantiate this class");
+  }
+}
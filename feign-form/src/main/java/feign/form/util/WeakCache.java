@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form.util;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+import lombok.experimental.FieldDefaults;
+import lombok.val;
+
+/**
+ * Thread-safe cache with weak keys and soft values.
+ * <p>
+ * The caches of the values, computed per class (or class loader), must not pin the classes
+ * and their loaders, so the redeployed applications and plugins could be unloaded. The keys are
+ * weak and the values are soft, because the values usually reference their key classes
+ * (via fields, methods, etc.): the unused values are released under memory pressure and
+ * their keys are collected after that. Such a value is computed again when it is needed.
+ *
+ * @param <K> keys type.
+ * @param <V> values type.
+ *
+ * @author Artem Labazin
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public final class WeakCache<K, V> {
+
+  Map<K, SoftReference<V>> entries = new WeakHashMap<K, SoftReference<V>>();
+
+  /**
+   * Returns the cached value.
+   *
+   * @param key value's key.
+   *
+   * @return cached value or {@code null} if there is no such value.
+   */
+  @Nullable
+  public V get (K key) {
+    synchronized (entries) {
+      val reference = entries.get(key);
+      return reference == null
+             ? null
+             : reference.get();
+    }
+  }
+
+  /**
+   * Caches the value, if there is no value for the key yet.
+   *
+   * @param key   value's key.
+   * @param value new value.
+   *
+   * @return the already cached value or the new one.
+   */
+  public V putIfAbsent (K key, V value) {
+    synchronized (entries) {
+      val reference = entries.get(key);
+      val previous = reference == null
+                     ? null
+                     : reference.get();
+      if (previous != null) {
+        return previous;
+      }
+      entries.put(key, new SoftReference<V>(value));
+      return value;
+    }
+  }
+
+  /**
+   * Returns the number of the cached entries, the entries of the collected keys are not counted.
+   *
+   * @return cache size.
+   */
+  public int size () {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+}
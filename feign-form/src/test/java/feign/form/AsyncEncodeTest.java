@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import lombok.val;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class AsyncEncodeTest {
+
+  private static final AtomicReference<Thread> ENCODER_THREAD;
+
+  private static final ExecutorService EXECUTOR;
+
+  static {
+    ENCODER_THREAD = new AtomicReference<>();
+    EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread (Runnable runnable) {
+        val thread = new Thread(runnable, "form-encoder");
+        ENCODER_THREAD.set(thread);
+        return thread;
+      }
+    });
+  }
+
+  @AfterClass
+  public static void shutdown () throws Exception {
+    EXECUTOR.shutdown();
+    EXECUTOR.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void multipartIsEncodedByExecutor () throws Exception {
+    val file = File.createTempFile("async-encode", ".txt");
+    file.deleteOnExit();
+    val stream = new FileOutputStream(file);
+    try {
+      stream.write("file content".getBytes(UTF_8));
+    } finally {
+      stream.close();
+    }
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", file);
+    data.put("text", "popa");
+
+    val template = new RequestTemplate();
+    template.header("Content-Type", "multipart/form-data");
+
+    val future = new FormEncoder().encodeAsync(data, FormEncoder.MAP_STRING_WILDCARD, template, EXECUTOR);
+    assertThat(template.headers().get("Content-Type").iterator().next()).startsWith("multipart/form-data; charset=UTF-8; boundary=");
+    assertThat(template.requestBody().asBytes()).isNull();
+
+    val body = future.get(5, TimeUnit.SECONDS);
+    assertThat(ENCODER_THREAD.get()).isNotNull();
+    assertThat(new String(body.asBytes(), UTF_8))
+        .contains("filename=\"" + file.getName() + "\"")
+        .contains("file content")
+        .contains("popa");
+
+    template.body(body);
+    assertThat(template.requestBody().length()).isEqualTo(body.length());
+  }
+
+  @Test
+  public void preparedFormIsEncodedByExecutor () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    Map<String, Object> staticData = new LinkedHashMap<>();
+    staticData.put("static", "popa");
+    val form = processor.prepare(UTF_8, staticData);
+
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("variable", "hello");
+    val template = new RequestTemplate();
+
+    val blocked = new LinkedBlockingQueue<Runnable>();
+    val future = new FormEncoder().encodeAsync(form.bind(data), FormEncoder.MAP_STRING_WILDCARD, template, blocked::add);
+    assertThat(template.headers().get("Content-Type").iterator().next()).endsWith("boundary=" + form.getBoundary());
+    assertThat(future.isDone()).isFalse();
+
+    blocked.poll().run();
+    assertThat(new String(future.get().asBytes(), UTF_8))
+        .contains("popa")
+        .contains("hello");
+  }
+
+  @Test
+  public void listenerGetsBody () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("text", "popa");
+    val template = new RequestTemplate();
+    template.header("Content-Type", "multipart/form-data");
+
+    val bodies = new LinkedBlockingQueue<Request.Body>();
+    val threads = new LinkedBlockingQueue<Thread>();
+    val future = new FormEncoder().encodeAsync(data, FormEncoder.MAP_STRING_WILDCARD, template, EXECUTOR);
+    val listener = new EncodingFuture.Listener() {
+
+      @Override
+      public void completed (Request.Body body) {
+        threads.add(Thread.currentThread());
+        bodies.add(body);
+      }
+
+      @Override
+      public void failed (Throwable cause) {
+        throw new AssertionError(cause);
+      }
+    };
+    future.addListener(listener);
+
+    val body = bodies.poll(5, TimeUnit.SECONDS);
+    assertThat(new String(body.asBytes(), UTF_8)).contains("popa");
+    assertThat(threads.poll()).isIn(ENCODER_THREAD.get(), Thread.currentThread());
+
+    // the listener of the done future is notified right away
+    future.addListener(listener);
+    assertThat(bodies.poll()).isSameAs(body);
+    assertThat(threads.poll()).isSameAs(Thread.currentThread());
+  }
+
+  @Test
+  public void listenerGetsFailure () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", new File("/no/such/file.txt"));
+    val template = new RequestTemplate();
+    template.header("Content-Type", "multipart/form-data");
+
+    val failures = new LinkedBlockingQueue<Throwable>();
+    new FormEncoder().encodeAsync(data, FormEncoder.MAP_STRING_WILDCARD, template, EXECUTOR)
+        .addListener(new EncodingFuture.Listener() {
+
+          @Override
+          public void completed (Request.Body body) {
+            failures.add(new AssertionError("The body must not be encoded"));
+          }
+
+          @Override
+          public void failed (Throwable cause) {
+            failures.add(cause);
+          }
+        });
+
+    assertThat(failures.poll(5, TimeUnit.SECONDS)).isInstanceOf(EncodeException.class);
+  }
+
+  @Test
+  public void urlencodedIsEncodedRightAway () throws Exception {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("key", singletonList("value"));
+
+    val template = new RequestTemplate();
+    template.header("Content-Type", "application/x-www-form-urlencoded");
+
+    val future = new FormEncoder().encodeAsync(data, FormEncoder.MAP_STRING_WILDCARD, template, EXECUTOR);
+
+    assertThat(future.isDone()).isTrue();
+    assertThat(new String(future.get().asBytes(), UTF_8)).isEqualTo("key=value");
+    assertThat(template.requestBody().asBytes()).isEqualTo(future.get().asBytes());
+  }
+}
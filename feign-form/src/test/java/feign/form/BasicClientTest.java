@@ -83,6 +83,15 @@ public class BasicClientTest {
     Assert.assertEquals(Files.size(path), Long.parseLong(stringResponse));
   }
 
+  @Test
+  public void testUploadPath () throws Exception {
+    val path = Paths.get(Thread.currentThread().getContextClassLoader().getResource("file.txt").toURI());
+    Assert.assertTrue(Files.exists(path));
+
+    val stringResponse = API.upload(path);
+    Assert.assertEquals(Files.size(path), Long.parseLong(stringResponse));
+  }
+
   @Test
   public void testUploadWithParam () throws Exception {
     val path = Paths.get(Thread.currentThread().getContextClassLoader().getResource("file.txt").toURI());
@@ -130,6 +139,17 @@ public class BasicClientTest {
     Assert.assertEquals(Files.size(path1) + Files.size(path2), Long.parseLong(stringResponse));
   }
 
+  @Test
+  public void testMultiplePathsList () throws Exception {
+    val path1 = Paths.get(Thread.currentThread().getContextClassLoader().getResource("file.txt").toURI());
+    Assert.assertTrue(Files.exists(path1));
+    val path2 = Paths.get(Thread.currentThread().getContextClassLoader().getResource("another_file.txt").toURI());
+    Assert.assertTrue(Files.exists(path2));
+
+    val stringResponse = API.uploadWithPathList(asList(path1, path2));
+    Assert.assertEquals(Files.size(path1) + Files.size(path2), Long.parseLong(stringResponse));
+  }
+
   @Test
   public void testUploadWithDto () throws Exception {
     val dto = new Dto("Artem", 11);
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import feign.form.multipart.Output;
+import feign.form.util.BufferPool;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class BufferPoolTest {
+
+  @Test
+  public void sizeClasses () {
+    val pool = new BufferPool(2, 4096);
+
+    assertThat(pool.acquire(1)).hasSize(256);
+    assertThat(pool.acquire(256)).hasSize(256);
+    assertThat(pool.acquire(257)).hasSize(512);
+    assertThat(pool.acquire(4096)).hasSize(4096);
+    assertThat(pool.acquire(4097)).hasSize(4097);
+    assertThat(pool.getHitCount()).isZero();
+    assertThat(pool.getMissCount()).isEqualTo(5);
+  }
+
+  @Test
+  public void reuse () {
+    val pool = new BufferPool(2, 4096);
+    val first = pool.acquire(1000);
+    val second = pool.acquire(1000);
+    val third = pool.acquire(1000);
+    pool.release(first);
+    pool.release(second);
+    pool.release(third); // the size class is full
+    pool.release(new byte[1000]); // not a size class
+
+    assertThat(pool.acquire(600)).isSameAs(first);
+    assertThat(pool.acquire(1024)).isSameAs(second);
+    assertThat(pool.acquire(1024)).isNotSameAs(third);
+    assertThat(pool.getHitCount()).isEqualTo(2);
+    assertThat(pool.getMissCount()).isEqualTo(4);
+    assertThat(pool.getHitRate()).isEqualTo(2.0 / 6);
+  }
+
+  @Test
+  public void concurrentAcquire () throws Exception {
+    val pool = new BufferPool(16, 4096);
+    val executor = Executors.newFixedThreadPool(8);
+    try {
+      val tasks = new ArrayList<Callable<Boolean>>();
+      for (int task = 0; task < 8; task++) {
+        tasks.add(new Callable<Boolean>() {
+
+          @Override
+          public Boolean call () throws Exception {
+            for (int iteration = 0; iteration < 10_000; iteration++) {
+              val buffer = pool.acquire(512);
+              buffer[0] = 1;
+              buffer[0] = 0;
+              pool.release(buffer);
+            }
+            return true;
+          }
+        });
+      }
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        assertThat(future.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Set<byte[]> distinct = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+    List<byte[]> acquired = new ArrayList<>();
+    for (int index = 0; index < 16; index++) {
+      val buffer = pool.acquire(512);
+      acquired.add(buffer);
+      distinct.add(buffer);
+    }
+    assertThat(distinct).hasSize(acquired.size());
+    assertThat(pool.getHitCount() + pool.getMissCount()).isEqualTo(8 * 10_000 + 16);
+  }
+
+  @Test
+  public void outputReturnsScratch () throws Exception {
+    new Output(UTF_8).close();
+    val hits = BufferPool.SHARED.getHitCount();
+
+    val output = new Output(UTF_8);
+    output.write("popa");
+    output.close();
+
+    assertThat(BufferPool.SHARED.getHitCount()).isGreaterThan(hits);
+  }
+
+  @Test
+  public void outputGrowsThroughPool () throws Exception {
+    val bytes = new byte[10_000];
+    Arrays.fill(bytes, (byte) 1);
+    writeAndClose(bytes);
+    val hits = BufferPool.SHARED.getHitCount();
+
+    writeAndClose(bytes);
+
+    // the scratch, the initial buffer and the grown one
+    assertThat(BufferPool.SHARED.getHitCount() - hits).isGreaterThanOrEqualTo(3);
+  }
+
+  @Test
+  public void closedOutputKeepsBytes () throws Exception {
+    val output = new Output(UTF_8);
+    output.write("popa");
+    output.close();
+
+    assertThat(output.toByteArray()).isEqualTo("popa".getBytes(UTF_8));
+  }
+
+  private static void writeAndClose (byte[] bytes) throws Exception {
+    val output = new Output(UTF_8);
+    output.write(bytes);
+    assertThat(output.toByteArray()).isEqualTo(bytes);
+    output.close();
+  }
+}
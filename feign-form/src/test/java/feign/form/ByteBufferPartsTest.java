@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import feign.form.multipart.SegmentedBody;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class ByteBufferPartsTest {
+
+  private static final MultipartFormContentProcessor PROCESSOR;
+
+  static {
+    PROCESSOR = new MultipartFormContentProcessor(new Encoder.Default());
+  }
+
+  @Test
+  public void heapAndDirectBuffers () throws Exception {
+    val content = content(20_000);
+    val direct = ByteBuffer.allocateDirect(content.length);
+    direct.put(content).flip();
+
+    val heap = ByteBuffer.wrap(content, 100, 10_000);
+    assertBuffersAsArrays(singletonForm("heap", heap), singletonForm("heap", Arrays.copyOfRange(content, 100, 10_100)));
+    assertThat(heap.position()).isEqualTo(100);
+
+    assertBuffersAsArrays(singletonForm("direct", direct), singletonForm("direct", content));
+    assertThat(direct.position()).isEqualTo(0);
+  }
+
+  @Test
+  public void mappedBuffer () throws Exception {
+    val content = content(30_000);
+    val file = File.createTempFile("mapped-buffer", ".bin");
+    file.deleteOnExit();
+    val fileOutputStream = new FileOutputStream(file);
+    try {
+      fileOutputStream.write(content);
+    } finally {
+      fileOutputStream.close();
+    }
+
+    val randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      val mapped = randomAccessFile.getChannel().map(READ_ONLY, 0, content.length);
+      assertBuffersAsArrays(singletonForm("mapped", mapped), singletonForm("mapped", content));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  @Test
+  public void segmentedBodyReferencesDirectBuffer () throws Exception {
+    val content = content(50_000);
+    val direct = ByteBuffer.allocateDirect(content.length);
+    direct.put(content).flip();
+    val data = new LinkedHashMap<String, Object>();
+    data.put("direct", direct);
+    data.put("text", "popa");
+
+    val output = Output.segmented(UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    val body = output.toSegmentedBody();
+
+    // chunk before the buffer, the buffer, chunk after it
+    assertThat(body.getSegmentCount()).isEqualTo(3);
+    assertThat(body.getLength()).isEqualTo(PROCESSOR.getContentLength(UTF_8, "boundary", data));
+
+    val arrays = new LinkedHashMap<String, Object>();
+    arrays.put("direct", content);
+    arrays.put("text", "popa");
+    val expected = encodeOnHeap(arrays);
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(expected);
+
+    val channel = new ByteArrayOutputStream();
+    body.writeTo(Channels.newChannel(channel));
+    assertThat(channel.toByteArray()).isEqualTo(expected);
+
+    val input = new ByteArrayOutputStream();
+    val inputStream = body.newInputStream();
+    val buffer = new byte[1000];
+    int read = inputStream.read(buffer);
+    while (read >= 0) {
+      input.write(buffer, 0, read);
+      read = inputStream.read(buffer);
+    }
+    assertThat(input.toByteArray()).isEqualTo(expected);
+    assertThat(direct.position()).isEqualTo(0);
+  }
+
+  @Test
+  public void smallDirectBufferIsCopied () throws Exception {
+    val direct = ByteBuffer.allocateDirect(SegmentedBody.MIN_SHARED_SIZE - 1);
+    val data = singletonForm("small", direct);
+
+    val output = Output.segmented(UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    val body = output.toSegmentedBody();
+    assertThat(body.getSegmentCount()).isEqualTo(1);
+
+    direct.put(0, (byte) 1);
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isNotEqualTo(encodeOnHeap(data));
+  }
+
+  private void assertBuffersAsArrays (Map<String, Object> buffers, Map<String, Object> arrays) throws Exception {
+    val expected = encodeOnHeap(arrays);
+    assertThat(PROCESSOR.getContentLength(UTF_8, "boundary", buffers)).isEqualTo(expected.length);
+    assertThat(encodeOnHeap(buffers)).isEqualTo(expected);
+
+    val stream = new ByteArrayOutputStream();
+    val output = new Output(stream, UTF_8);
+    PROCESSOR.write(output, "boundary", buffers);
+    output.close();
+    assertThat(stream.toByteArray()).isEqualTo(expected);
+
+    val channel = new ByteArrayOutputStream();
+    val channelOutput = new Output(Channels.newChannel(channel), UTF_8);
+    PROCESSOR.write(channelOutput, "boundary", buffers);
+    channelOutput.close();
+    assertThat(channel.toByteArray()).isEqualTo(expected);
+  }
+
+  private byte[] encodeOnHeap (Map<String, Object> data) throws Exception {
+    val output = new Output(UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    return output.toByteArray();
+  }
+
+  private static Map<String, Object> singletonForm (String key, Object value) {
+    val data = new LinkedHashMap<String, Object>();
+    data.put(key, value);
+    return data;
+  }
+
+  private static byte[] content (int length) {
+    val content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) i;
+    }
+    return content;
+  }
+}
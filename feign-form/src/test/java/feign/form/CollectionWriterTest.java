@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class CollectionWriterTest {
+
+  private static final Pattern PART = Pattern.compile(
+      "name=\"([^\"]+)\"(?:; filename=\"([^\"]+)\")?\r\nContent-Type: ([^;\r]+)[^\r]*\r\n(?:[^\r]+\r\n)?\r\n([^\r]*)\r\n"
+  );
+
+  @Test
+  public void mixedElements () throws Exception {
+    val file = File.createTempFile("collection", ".txt");
+    file.deleteOnExit();
+    val fileOutputStream = new FileOutputStream(file);
+    try {
+      fileOutputStream.write("file content".getBytes(UTF_8));
+    } finally {
+      fileOutputStream.close();
+    }
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("mixed", Arrays.asList(
+        "text",
+        "bytes".getBytes(UTF_8),
+        null,
+        file,
+        new FormData("image/png", "image.png", "png".getBytes(UTF_8)),
+        42
+    ));
+    data.put("array", new Object[] { 1, "two" });
+
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    assertThat(parts(processor, data)).containsExactly(
+        "mixed|null|text/plain|text",
+        "mixed|null|application/octet-stream|bytes",
+        "mixed|" + file.getName() + "|text/plain|file content",
+        "mixed|image.png|image/png|png",
+        "mixed|null|text/plain|42",
+        "array|null|text/plain|1",
+        "array|null|text/plain|two"
+    );
+  }
+
+  @Test
+  public void elementsWithoutWriterGoToFallback () {
+    Encoder delegate = (object, bodyType, template) -> template.body("delegate");
+    val processor = new MultipartFormContentProcessor(delegate);
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("list", Arrays.asList("text", new LinkedHashMap<String, Object>()));
+
+    assertThat(parts(processor, data)).containsExactly(
+        "list|null|text/plain|text",
+        "list|null|text/plain|delegate"
+    );
+  }
+
+  @Test
+  public void stream () {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val closed = new boolean[1];
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("stream", Stream.of("a", "b", "c").onClose(() -> closed[0] = true));
+
+    // the stream is not consumed by counting
+    assertThat(processor.getContentLength(UTF_8, "boundary", data)).isEqualTo(-1);
+
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    val body = new String(template.requestBody().asBytes(), UTF_8);
+    assertThat(parts(body)).containsExactly(
+        "stream|null|text/plain|a",
+        "stream|null|text/plain|b",
+        "stream|null|text/plain|c"
+    );
+    assertThat(closed[0]).isTrue();
+  }
+
+  @Test
+  public void lazyIterable () {
+    val count = 100_000;
+    val data = new LinkedHashMap<String, Object>();
+    data.put("numbers", (Iterable<Integer>) () -> new Iterator<Integer>() {
+
+      int next;
+
+      @Override
+      public boolean hasNext () {
+        return next < count;
+      }
+
+      @Override
+      public Integer next () {
+        return next++;
+      }
+    });
+
+    val single = new LinkedHashMap<String, Object>();
+    single.put("numbers", 7);
+
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val closing = "--boundary--\r\n".length();
+    val partLength = processor.getContentLength(UTF_8, "boundary", single) - closing;
+    // 10 one-digit numbers, 90 two-digit ones, etc.
+    val digits = 10 + 90 * 2 + 900 * 3 + 9000 * 4 + 90000 * 5;
+    assertThat(processor.getContentLength(UTF_8, "boundary", data))
+        .isEqualTo(partLength * count + (digits - count) + closing);
+  }
+
+  private static List<String> parts (MultipartFormContentProcessor processor, LinkedHashMap<String, Object> data) {
+    val output = new Output(UTF_8);
+    processor.write(output, "boundary", data);
+    return parts(new String(output.toByteArray(), UTF_8));
+  }
+
+  private static List<String> parts (String body) {
+    val result = new ArrayList<String>();
+    val matcher = PART.matcher(body);
+    while (matcher.find()) {
+      result.add(matcher.group(1) + '|' + matcher.group(2) + '|' + matcher.group(3) + '|' + matcher.group(4));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.AbstractWriter;
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class ContentLengthTest {
+
+  private static final MultipartFormContentProcessor PROCESSOR =
+      new MultipartFormContentProcessor(new Encoder.Default());
+
+  private static Map<String, Object> createData () throws Exception {
+    val file = new File(Thread.currentThread().getContextClassLoader().getResource("file.txt").toURI());
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("name", "Артём");
+    data.put("age", 42);
+    data.put("bytes", new byte[] { 1, 2, 3 });
+    data.put("form", new FormData("image/png", "файл.png", new byte[100]));
+    data.put("file", file);
+    data.put("names", asList("one", "два"));
+    data.put("ids", new long[] { 1, -20, 300 });
+    data.put("dto", new Dto("Artem", 11));
+    return data;
+  }
+
+  @Test
+  public void exactLength () throws Exception {
+    val data = createData();
+    for (val charset : asList(UTF_8, Charset.forName("windows-1251"))) {
+      val output = new Output(charset);
+      PROCESSOR.write(output, "boundary", data);
+
+      assertThat(PROCESSOR.getContentLength(charset, "boundary", data))
+          .as(charset.name())
+          .isEqualTo(output.toByteArray().length);
+    }
+  }
+
+  @Test
+  public void exactBuffer () throws Exception {
+    val template = new RequestTemplate();
+    template.header("Content-Type", "multipart/form-data");
+    PROCESSOR.process(template, UTF_8, createData());
+
+    val contentType = ParsedContentType.of(template.headers().get("Content-Type").iterator().next());
+    assertThat(template.body()).hasSize((int) PROCESSOR.getContentLength(UTF_8, contentType.getBoundary(), createData()));
+
+    val output = new Output(UTF_8, 3);
+    output.write("abc");
+    assertThat(output.toByteArray()).isSameAs(output.toByteArray());
+  }
+
+  @Test
+  public void countingPassOnlyWhenLengthIsNeeded () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val writer = new CountingWriter();
+    processor.addFirstWriter(writer);
+    val template = new RequestTemplate();
+    template.header("Content-Type", "multipart/form-data");
+
+    processor.process(template, UTF_8, createData());
+    assertThat(writer.calls.get()).isEqualTo(1);
+
+    processor.setSegmented(true);
+    processor.process(template, UTF_8, createData());
+    assertThat(writer.calls.get()).isEqualTo(2);
+
+    processor.setSegmented(false);
+    processor.setSpillThreshold(1024);
+    processor.process(template, UTF_8, createData());
+    assertThat(writer.calls.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void sizingPassSkipsExpensiveParts () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val writer = new CountingWriter();
+    processor.addFirstWriter(writer);
+    val data = createData();
+
+    val sizing = Output.sizing(UTF_8);
+    processor.write(sizing, "boundary", data);
+    assertThat(writer.calls.get()).isZero();
+    assertThat(sizing.getCount()).isEqualTo(-1);
+    assertThat(sizing.getCountedBytes())
+        .isPositive()
+        .isLessThan(processor.getContentLength(UTF_8, "boundary", data));
+  }
+
+  private static class CountingWriter extends AbstractWriter {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public boolean isApplicable (Object value) {
+      return value instanceof Dto;
+    }
+
+    @Override
+    protected void write (Output output, String key, Object value) {
+      if (output.isSizing()) {
+        output.markUnknownLength();
+        return;
+      }
+      calls.incrementAndGet();
+      output.write(key);
+    }
+  }
+}
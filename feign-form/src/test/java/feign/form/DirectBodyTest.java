@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import feign.codec.Encoder;
+import feign.form.multipart.DirectBody;
+import feign.form.multipart.Output;
+import feign.form.util.DirectBufferPool;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class DirectBodyTest {
+
+  @Test
+  public void writeAndRead () throws Exception {
+    val pool = new DirectBufferPool(16, 8);
+    val body = new DirectBody(pool);
+    val bytes = new byte[100];
+    for (int index = 0; index < bytes.length; index++) {
+      bytes[index] = (byte) index;
+    }
+    body.write(ByteBuffer.wrap(bytes, 0, 10));
+    body.write(ByteBuffer.wrap(bytes, 10, 90));
+    body.close();
+
+    assertThat(body.getLength()).isEqualTo(100);
+    assertThat(pool.getMissCount()).isEqualTo(7);
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(bytes);
+
+    val channelCopy = new ByteArrayOutputStream();
+    body.writeTo(Channels.newChannel(channelCopy));
+    assertThat(channelCopy.toByteArray()).isEqualTo(bytes);
+
+    val read = new byte[100];
+    val input = body.newInputStream();
+    int offset = 0;
+    int count = input.read(read, offset, 7);
+    while (count > 0) {
+      offset += count;
+      count = input.read(read, offset, Math.min(7, read.length - offset));
+    }
+    assertThat(read).isEqualTo(bytes);
+    assertThat(input.read()).isEqualTo(-1);
+
+    body.release();
+    assertThat(body.isReleased()).isTrue();
+    new DirectBody(pool).write(ByteBuffer.wrap(bytes));
+    assertThat(pool.getHitCount()).isEqualTo(7);
+  }
+
+  @Test
+  public void transferFromFile () throws Exception {
+    val file = File.createTempFile("direct-body", ".bin");
+    file.deleteOnExit();
+    val bytes = new byte[70_000];
+    Arrays.fill(bytes, (byte) 'x');
+    val fileStream = new FileOutputStream(file);
+    try {
+      fileStream.write(bytes);
+    } finally {
+      fileStream.close();
+    }
+
+    val body = new DirectBody();
+    val inputStream = new FileInputStream(file);
+    try {
+      body.transferFrom(inputStream.getChannel(), 5, bytes.length - 10);
+    } finally {
+      inputStream.close();
+    }
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(Arrays.copyOf(bytes, bytes.length - 10));
+    body.release();
+  }
+
+  @Test
+  public void offHeapBodyIsTheSame () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val data = new LinkedHashMap<String, Object>();
+    data.put("text", "Привет, мир");
+    data.put("bytes", new byte[] { 1, 2, 3 });
+    data.put("numbers", new int[] { 1, 2, 3 });
+
+    val heap = new Output(UTF_8);
+    processor.write(heap, "boundary", data);
+    heap.close();
+
+    val direct = Output.direct(UTF_8);
+    processor.write(direct, "boundary", data);
+    direct.close();
+    val body = direct.toDirectBody();
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(heap.toByteArray());
+    assertThat(body.getLength()).isEqualTo(processor.getContentLength(UTF_8, "boundary", data));
+    body.release();
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class FlatteningTest {
+
+  private static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]+)\"\r\n[^\r]*\r\n\r\n([^\r]*)\r\n");
+
+  @Test
+  public void urlencodedDots () {
+    val processor = new UrlencodedFormContentProcessor();
+    processor.setFlatteningStyle(FlatteningStyle.DOTS);
+
+    val expected = "order.customer.name=Artem&order.customer.address.city=Moscow" +
+                   "&order.items%5B0%5D.sku=a1&order.items%5B0%5D.quantity=2" +
+                   "&order.items%5B1%5D.sku=b2&order.items%5B1%5D.quantity=1" +
+                   "&order.tags=new&order.tags=paid&order.attributes.gift=true&order.attributes.note.text=hi" +
+                   "&mode=FAST";
+    assertThat(encodeUrlencoded(processor)).isEqualTo(expected);
+    // the second run uses the cached keys
+    assertThat(encodeUrlencoded(processor)).isEqualTo(expected);
+  }
+
+  @Test
+  public void urlencodedBrackets () {
+    val processor = new UrlencodedFormContentProcessor();
+    processor.setFlatteningStyle(FlatteningStyle.BRACKETS);
+
+    assertThat(encodeUrlencoded(processor).replace("%5B", "[").replace("%5D", "]")).isEqualTo(
+        "order[customer][name]=Artem&order[customer][address][city]=Moscow" +
+        "&order[items][0][sku]=a1&order[items][0][quantity]=2" +
+        "&order[items][1][sku]=b2&order[items][1][quantity]=1" +
+        "&order[tags]=new&order[tags]=paid&order[attributes][gift]=true&order[attributes][note][text]=hi" +
+        "&mode=FAST"
+    );
+  }
+
+  @Test
+  public void multipartDots () {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setFlatteningStyle(FlatteningStyle.DOTS);
+
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, createData());
+    val body = new String(template.requestBody().asBytes(), UTF_8);
+
+    val parts = new ArrayList<String>();
+    val matcher = PART_NAME.matcher(body);
+    while (matcher.find()) {
+      parts.add(matcher.group(1) + '=' + matcher.group(2));
+    }
+    assertThat(parts).containsExactly(
+        "order.customer.name=Artem",
+        "order.customer.address.city=Moscow",
+        "order.items[0].sku=a1",
+        "order.items[0].quantity=2",
+        "order.items[1].sku=b2",
+        "order.items[1].quantity=1",
+        "order.tags=new",
+        "order.tags=paid",
+        "order.attributes.gift=true",
+        "order.attributes.note.text=hi",
+        "mode=FAST"
+    );
+  }
+
+  @Test
+  public void notFlattenedByDefault () {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("customer", new Customer("Artem", new Address("Moscow")));
+
+    val output = new Output(UTF_8);
+    new MultipartFormContentProcessor(new Encoder.Default()).write(output, "boundary", data);
+    val body = new String(output.toByteArray(), UTF_8);
+
+    assertThat(body)
+        .contains("name=\"name\"")
+        .contains("name=\"city\"")
+        .doesNotContain("customer.");
+  }
+
+  private static String encodeUrlencoded (UrlencodedFormContentProcessor processor) {
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, createData());
+    return new String(template.body(), UTF_8);
+  }
+
+  private static Map<String, Object> createData () {
+    val attributes = new LinkedHashMap<String, Object>();
+    attributes.put("gift", true);
+    attributes.put("note", new Note("hi"));
+
+    val order = new Order(
+        new Customer("Artem", new Address("Moscow")),
+        asList(new Item("a1", 2), new Item("b2", 1)),
+        asList("new", "paid"),
+        attributes
+    );
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("order", order);
+    data.put("mode", ScalarMode.FAST);
+    return data;
+  }
+
+  enum ScalarMode {
+
+    FAST
+  }
+
+  @Data
+  @AllArgsConstructor
+  static class Order {
+
+    Customer customer;
+
+    List<Item> items;
+
+    List<String> tags;
+
+    Map<String, Object> attributes;
+  }
+
+  @Data
+  @AllArgsConstructor
+  static class Customer {
+
+    String name;
+
+    Address address;
+  }
+
+  @Data
+  @AllArgsConstructor
+  static class Address {
+
+    String city;
+  }
+
+  @Data
+  @AllArgsConstructor
+  static class Item {
+
+    String sku;
+
+    int quantity;
+  }
+
+  @Data
+  @AllArgsConstructor
+  static class Note {
+
+    String text;
+  }
+}
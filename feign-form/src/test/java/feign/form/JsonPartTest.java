@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class JsonPartTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Test
+  public void mapIsWrittenAsJson () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val factory = new JacksonFactory();
+    processor.setJsonSerializerFactory(factory);
+
+    val json = new LinkedHashMap<String, Object>();
+    json.put("name", "popa");
+    json.put("size", 42);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("json", json);
+    data.put("other", new LinkedHashMap<String, Object>(json));
+
+    val body = encode(processor, data);
+    assertThat(new String(body, UTF_8)).isEqualTo(
+        "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"json\"\r\n" +
+        "Content-Type: application/json\r\n" +
+        "\r\n" +
+        "{\"name\":\"popa\",\"size\":42}\r\n" +
+        "--boundary\r\n" +
+        "Content-Disposition: form-data; name=\"other\"\r\n" +
+        "Content-Type: application/json\r\n" +
+        "\r\n" +
+        "{\"name\":\"popa\",\"size\":42}\r\n" +
+        "--boundary--\r\n"
+    );
+    assertThat(processor.getContentLength(UTF_8, "boundary", data)).isEqualTo(body.length);
+
+    val stream = new ByteArrayOutputStream();
+    val output = new Output(stream, UTF_8);
+    processor.write(output, "boundary", data);
+    output.close();
+    assertThat(stream.toByteArray()).isEqualTo(body);
+
+    // one serializer per class, not per value
+    assertThat(factory.created.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void delegateEncoderIsTurnedBack () throws Exception {
+    Encoder delegate = (object, bodyType, template) -> template.body("delegate");
+    val processor = new MultipartFormContentProcessor(delegate);
+    processor.setJsonSerializerFactory(new JacksonFactory());
+    processor.setJsonSerializerFactory(null);
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("json", new LinkedHashMap<String, Object>());
+
+    assertThat(new String(encode(processor, data), UTF_8))
+        .contains("Content-Type: text/plain; charset=UTF-8\r\n\r\ndelegate\r\n")
+        .doesNotContain("application/json");
+  }
+
+  private byte[] encode (MultipartFormContentProcessor processor, Map<String, Object> data) throws Exception {
+    val output = new Output(UTF_8);
+    processor.write(output, "boundary", data);
+    output.close();
+    return output.toByteArray();
+  }
+
+  private static class JacksonFactory implements JsonSerializer.Factory {
+
+    AtomicInteger created = new AtomicInteger();
+
+    @Override
+    public JsonSerializer create (Class<?> type) {
+      created.incrementAndGet();
+      final ObjectWriter writer = MAPPER.writerFor(type);
+      return new JsonSerializer() {
+
+        @Override
+        public void serialize (Object value, OutputStream outputStream) throws IOException {
+          writer.writeValue(outputStream, value);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import feign.form.util.LruCache;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class LruCacheTest {
+
+  @Test
+  public void evictsLeastRecentlyUsed () {
+    val cache = new LruCache<String, Integer>(2);
+    cache.putIfAbsent("first", 1);
+    cache.putIfAbsent("second", 2);
+
+    assertThat(cache.get("first")).isEqualTo(1);
+    cache.putIfAbsent("third", 3);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get("second")).isNull();
+    assertThat(cache.get("first")).isEqualTo(1);
+    assertThat(cache.get("third")).isEqualTo(3);
+  }
+
+  @Test
+  public void keepsCachedValue () {
+    val cache = new LruCache<String, Integer>(2);
+
+    assertThat(cache.putIfAbsent("key", 1)).isEqualTo(1);
+    assertThat(cache.putIfAbsent("key", 2)).isEqualTo(1);
+  }
+
+  @Test
+  public void stripedCacheIsBounded () {
+    val cache = new LruCache<String, Integer>(1024);
+    for (int index = 0; index < 10_000; index++) {
+      cache.putIfAbsent("key" + index, index);
+      // the recurring key is never evicted
+      assertThat(cache.putIfAbsent("recurring", -1)).isEqualTo(-1);
+    }
+
+    assertThat(cache.size()).isLessThanOrEqualTo(1024);
+    assertThat(cache.get("key9999")).isEqualTo(9999);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.Logger.Level.FULL;
+import static feign.Request.HttpMethod.POST;
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.DEFINED_PORT;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.DirectBody;
+import feign.jackson.JacksonEncoder;
+import lombok.val;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * @author Artem Labazin
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+    webEnvironment = DEFINED_PORT,
+    classes = Server.class
+)
+public class OffHeapClientTest {
+
+  private static final TestClient API;
+
+  static {
+    val encoder = new FormEncoder(new JacksonEncoder());
+    encoder.setOffHeapThreshold(0);
+
+    API = Feign.builder()
+        .client(new StreamingClient())
+        .encoder(encoder)
+        .logger(new feign.Logger.JavaLogger().appendToFile("log.txt"))
+        .logLevel(FULL)
+        .target(TestClient.class, "http://localhost:8080");
+  }
+
+  @Test
+  public void testUpload () throws Exception {
+    val path = getPath("file.txt");
+
+    val stringResponse = API.upload(10, Boolean.TRUE, path.toFile());
+    assertThat(Long.parseLong(stringResponse)).isEqualTo(Files.size(path));
+  }
+
+  @Test
+  public void testMultipleFiles () throws Exception {
+    val path1 = getPath("file.txt");
+    val path2 = getPath("another_file.txt");
+
+    val stringResponse = API.uploadWithArray(new File[] { path1.toFile(), path2.toFile() });
+    assertThat(Long.parseLong(stringResponse)).isEqualTo(Files.size(path1) + Files.size(path2));
+  }
+
+  @Test
+  public void testUploadWithDto () throws Exception {
+    val dto = new Dto("Artem", 11);
+    val path = getPath("file.txt");
+
+    val response = API.uploadWithDto(dto, path.toFile());
+    assertThat(response.status()).isEqualTo(200);
+  }
+
+  @Test
+  public void testSubmitRepeatableFormParam () {
+    val stringResponse = API.submitRepeatableFormParam(asList("Milada", "Thais"));
+    assertThat(stringResponse).isEqualTo("Milada and Thais");
+  }
+
+  @Test
+  public void testNotStreamedRequest () {
+    val response = API.form("1", "1");
+    assertThat(response.status()).isEqualTo(200);
+  }
+
+  @Test
+  public void encodedBodyIsReleasedAfterSend () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setOffHeapThreshold(0);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", getPath("file.txt").toFile());
+
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    val request = Request.create(POST, "http://localhost:8080/upload", template.headers(), template.requestBody());
+    val body = StreamingBody.of(request);
+    val direct = (DirectBody) body.getEncodedBody();
+
+    val response = new StreamingClient().execute(request, new Request.Options());
+    assertThat(response.status()).isEqualTo(200);
+    assertThat(direct.isReleased()).isTrue();
+    assertThat(body.getEncodedBody()).isNull();
+
+    // a retry encodes the same parts lazily
+    assertThat(new StreamingClient().execute(request, new Request.Options()).status()).isEqualTo(200);
+  }
+
+  @Test
+  public void otherClientFailsLoudly () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setOffHeapThreshold(0);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", getPath("file.txt").toFile());
+
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    val request = Request.create(POST, "http://localhost:8080/upload", template.headers(), template.requestBody());
+
+    assertThat(new String(template.requestBody().asBytes(), UTF_8))
+        .contains(StreamingClient.class.getName());
+    assertThat(new Client.Default(null, null).execute(request, new Request.Options()).status())
+        .isGreaterThanOrEqualTo(400);
+  }
+
+  private Path getPath (String name) throws Exception {
+    val path = Paths.get(Thread.currentThread().getContextClassLoader().getResource(name).toURI());
+    assertThat(Files.exists(path)).isTrue();
+    return path;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.ContentProcessor.CRLF;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class OutputTest {
+
+  private static final String[] STRINGS = {
+      "",
+      "popa",
+      "привет, мир",
+      "mixed: ascii, кириллица, 中文 and 😀",
+      repeat("ascii-", 500) + "хвост",
+      repeat("юникод", 500)
+  };
+
+  private static String repeat (String string, int times) {
+    val result = new StringBuilder();
+    for (int index = 0; index < times; index++) {
+      result.append(string);
+    }
+    return result.toString();
+  }
+
+  @Test
+  public void writeString () {
+    for (val charsetName : Arrays.asList("UTF-8", "ISO-8859-1", "US-ASCII", "windows-1251", "UTF-16LE")) {
+      val charset = Charset.forName(charsetName);
+      for (val string : STRINGS) {
+        val output = new Output(charset);
+        output.write(string);
+        assertThat(output.toByteArray())
+            .as("%s in %s", string, charsetName)
+            .isEqualTo(string.getBytes(charset));
+      }
+    }
+  }
+
+  @Test
+  public void writeBoundary () {
+    val charset = Charset.forName("UTF-8");
+    val output = new Output(charset);
+    output.writeBoundary("one").writeBoundary("one").writeBoundary("two").writeClosingBoundary("two");
+
+    val expected = "--one" + CRLF + "--one" + CRLF + "--two" + CRLF + "--two--" + CRLF;
+    assertThat(output.toByteArray()).isEqualTo(expected.getBytes(charset));
+  }
+
+  @Test
+  public void writeFileRegions () throws Exception {
+    val bytes = new byte[200 * 1024];
+    new Random(42).nextBytes(bytes);
+    val file = File.createTempFile("output", ".bin");
+    file.deleteOnExit();
+    try (val stream = new FileOutputStream(file)) {
+      stream.write(bytes);
+    }
+
+    // the small regions are read, the big ones are mapped
+    try (val randomAccessFile = new RandomAccessFile(file, "r")) {
+      val channel = randomAccessFile.getChannel();
+      for (val region : new int[][] { { 0, 0 }, { 7, 1000 }, { 100, 5000 }, { 1, 64 * 1024 }, { 3, bytes.length - 3 } }) {
+        val output = new Output(Charset.forName("UTF-8"));
+        output.write(channel, region[0], region[1]);
+        assertThat(output.toByteArray())
+            .as("%d bytes from %d", region[1], region[0])
+            .isEqualTo(Arrays.copyOfRange(bytes, region[0], region[0] + region[1]));
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.Request.HttpMethod.POST;
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class ParallelPartsTest {
+
+  @Test
+  public void keepsPartsOrder () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    for (int index = 0; index < 20; index++) {
+      data.put("file" + index, createFile("content of file " + index));
+      data.put("text" + index, "text " + index);
+      data.put("bytes" + index, new byte[] { (byte) index });
+    }
+
+    val executor = Executors.newFixedThreadPool(4);
+    try {
+      assertThat(encode(data, executor)).isEqualTo(encode(data, null));
+    } finally {
+      shutdown(executor);
+    }
+  }
+
+  @Test
+  public void doesNotDeadlockOnBusyExecutor () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("first", "1");
+    data.put("second", createFile("2"));
+
+    // the only executor's thread encodes the body and waits for the parts
+    val executor = Executors.newSingleThreadExecutor();
+    try {
+      val processor = new MultipartFormContentProcessor(new Encoder.Default());
+      processor.setParallelExecutor(executor);
+      val template = new RequestTemplate();
+      val body = processor.processAsync(template, UTF_8, data, executor).get(5, TimeUnit.SECONDS);
+      assertThat(new String(body.asBytes(), UTF_8)).contains("1").contains("2");
+    } finally {
+      shutdown(executor);
+    }
+  }
+
+  @Test
+  public void propagatesPartErrors () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("missing", new File("missing-file.txt"));
+
+    val executor = Executors.newFixedThreadPool(2);
+    try {
+      encode(data, executor);
+      fail("Encoding of the missing file must fail");
+    } catch (EncodeException ex) {
+      assertThat(ex).isNotNull();
+    } finally {
+      shutdown(executor);
+    }
+  }
+
+  @Test
+  public void offHeapAndSpillingBodiesAreWrittenSequentially () throws Exception {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", createFile("content"));
+    data.put("text", "text");
+
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setParallelExecutor(command -> fail("The parts must not be prepared on the heap"));
+    val template = new RequestTemplate();
+
+    processor.setOffHeapThreshold(0);
+    processor.process(template, UTF_8, data);
+    release(template);
+
+    processor.setOffHeapThreshold(Long.MAX_VALUE);
+    processor.setSpillThreshold(1);
+    processor.process(template, UTF_8, data);
+    release(template);
+  }
+
+  private void release (RequestTemplate template) {
+    val request = Request.create(POST, "http://localhost", template.headers(), template.requestBody());
+    StreamingBody.of(request).release();
+  }
+
+  private String encode (Map<String, Object> data, Executor executor) {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setParallelExecutor(executor);
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+
+    val contentType = template.headers().get("Content-Type").iterator().next();
+    val boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+    return new String(template.requestBody().asBytes(), UTF_8).replace(boundary, "BOUNDARY");
+  }
+
+  private File createFile (String content) throws Exception {
+    val file = File.createTempFile("parallel-parts", ".txt");
+    file.deleteOnExit();
+    val stream = new FileOutputStream(file);
+    try {
+      stream.write(content.getBytes(UTF_8));
+    } finally {
+      stream.close();
+    }
+    return file;
+  }
+
+  private void shutdown (ExecutorService executor) throws Exception {
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+  }
+}
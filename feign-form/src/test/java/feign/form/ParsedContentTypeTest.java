@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.ContentType.MULTIPART;
+import static feign.form.ContentType.UNDEFINED;
+import static feign.form.ContentType.URLENCODED;
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class ParsedContentTypeTest {
+
+  @Test
+  public void parse () {
+    val parsed = ParsedContentType.of("multipart/form-data; charset=windows-1251; boundary=\"abc-123\"");
+
+    assertThat(parsed.getContentType()).isEqualTo(MULTIPART);
+    assertThat(parsed.getCharset()).isEqualTo(Charset.forName("windows-1251"));
+    assertThat(parsed.getBoundary()).isEqualTo("abc-123");
+  }
+
+  @Test
+  public void defaults () {
+    val parsed = ParsedContentType.of(" application/x-www-form-urlencoded");
+
+    assertThat(parsed.getContentType()).isEqualTo(URLENCODED);
+    assertThat(parsed.getCharset()).isEqualTo(UTF_8);
+    assertThat(parsed.getBoundary()).isNull();
+
+    assertThat(ParsedContentType.of(null).getContentType()).isEqualTo(UNDEFINED);
+    assertThat(ParsedContentType.of("application/json").getContentType()).isEqualTo(UNDEFINED);
+  }
+
+  @Test
+  public void unknownCharsetIsResolvedLazily () {
+    val parsed = ParsedContentType.of("application/json; charset=utf8mb4");
+
+    assertThat(parsed.getContentType()).isEqualTo(UNDEFINED);
+  }
+
+  @Test
+  public void nonFormRequestWithUnknownCharsetIsDelegated () {
+    val template = new RequestTemplate();
+    template.header("Content-Type", "application/json; charset=utf8mb4");
+
+    new FormEncoder(new Encoder() {
+
+      @Override
+      public void encode (Object object, Type bodyType, RequestTemplate template) {
+        template.body("delegated");
+      }
+    }).encode("popa", String.class, template);
+
+    assertThat(new String(template.requestBody().asBytes(), UTF_8)).isEqualTo("delegated");
+  }
+
+  @Test
+  public void cached () {
+    val value = "multipart/form-data; charset=UTF-8";
+
+    assertThat(ParsedContentType.of(value)).isSameAs(ParsedContentType.of(new String(value)));
+  }
+
+  @Test
+  public void recurringValuesSurviveOneTimeOnes () {
+    val value = "application/x-www-form-urlencoded; charset=UTF-8";
+    val parsed = ParsedContentType.of(value);
+
+    for (int index = 0; index < 10_000; index++) {
+      ParsedContentType.of("multipart/form-data; boundary=" + index);
+      assertThat(ParsedContentType.of(value)).isSameAs(parsed);
+    }
+    val later = "multipart/form-data; charset=UTF-8; boundary=later";
+    assertThat(ParsedContentType.of(later)).isSameAs(ParsedContentType.of(new String(later)));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import feign.form.util.PercentEncoder;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class PercentEncoderTest {
+
+  private static final String[] STRINGS = {
+      "",
+      "popa",
+      "Hello, World! a+b=c&d ~'()",
+      "привет, мир",
+      "mixed: кириллица, 中文 and 😀",
+      "*.-_ 0123456789"
+  };
+
+  @SneakyThrows
+  private static String encode (String string, Charset charset) {
+    return URLEncoder.encode(string, charset.name());
+  }
+
+  @Test
+  public void sameAsUrlEncoder () {
+    for (val charsetName : Arrays.asList("UTF-8", "ISO-8859-1", "windows-1251", "UTF-16")) {
+      val charset = Charset.forName(charsetName);
+      for (val string : STRINGS) {
+        val encoder = new PercentEncoder(charset)
+            .appendPair("the key", string)
+            .appendPair("ключ", null);
+
+        val expected = encode("the key", charset) + '=' + encode(string, charset) + '&' + encode("ключ", charset);
+        assertThat(encoder.toByteArray())
+            .as("%s in %s", string, charsetName)
+            .isEqualTo(expected.getBytes(charset));
+      }
+    }
+  }
+
+  @Test
+  public void manyDynamicKeys () {
+    val charset = Charset.forName("UTF-8");
+    for (int index = 0; index < 10_000; index++) {
+      val encoder = new PercentEncoder(charset)
+          .appendPair("items[" + index + "]", "value")
+          .appendPair("ключ", "значение");
+
+      val expected = encode("items[" + index + "]", charset) + "=value&"
+                     + encode("ключ", charset) + '=' + encode("значение", charset);
+      assertThat(encoder.toByteArray()).isEqualTo(expected.getBytes(charset));
+      encoder.release();
+    }
+  }
+
+  @Test
+  public void growsBuffer () {
+    val charset = Charset.forName("UTF-8");
+    val encoder = new PercentEncoder(charset);
+    val expected = new StringBuilder();
+    for (int index = 0; index < 1000; index++) {
+      encoder.appendPair("key", "значение " + index);
+      if (index > 0) {
+        expected.append('&');
+      }
+      expected.append("key=").append(encode("значение " + index, charset));
+    }
+
+    assertThat(encoder.toByteArray()).isEqualTo(expected.toString().getBytes(charset));
+  }
+}
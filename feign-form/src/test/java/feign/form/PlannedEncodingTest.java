@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import feign.Client;
+import feign.Contract;
+import feign.Feign;
+import feign.Headers;
+import feign.Param;
+import feign.Request;
+import feign.RequestLine;
+import feign.Response;
+import feign.form.multipart.AbstractWriter;
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class PlannedEncodingTest {
+
+  @Test
+  public void plannedMultipartEqualsGeneric () {
+    val planned = new CapturingClient();
+    val encoder = new FormEncoder();
+    client(planned, encoder.contract(new Contract.Default()), encoder)
+        .upload("popa", 42, new byte[] { 1, 2, 3 }, "object");
+
+    val generic = new CapturingClient();
+    client(generic, new Contract.Default(), new FormEncoder())
+        .upload("popa", 42, new byte[] { 1, 2, 3 }, "object");
+
+    assertThat(planned.getContentType())
+        .startsWith("multipart/form-data; charset=UTF-8; boundary=")
+        .doesNotContain("feign-form-plan");
+    assertThat(planned.getNormalizedBody())
+        .isEqualTo(generic.getNormalizedBody())
+        .contains("Content-Disposition: form-data; name=\"name\"\r\n"
+                  + "Content-Type: text/plain; charset=UTF-8\r\n\r\npopa\r\n")
+        .contains("name=\"count\"\r\nContent-Type: text/plain; charset=UTF-8\r\n\r\n42\r\n");
+  }
+
+  @Test
+  public void writersAreChosenPerCall () {
+    val planned = new CapturingClient();
+    val encoder = new FormEncoder();
+    val api = client(planned, encoder.contract(new Contract.Default()), encoder);
+
+    val processor = (MultipartFormContentProcessor) encoder.getContentProcessor(ContentType.MULTIPART);
+    processor.addFirstWriter(new AbstractWriter() {
+
+      @Override
+      public boolean isApplicable (Object value) {
+        return value instanceof String;
+      }
+
+      @Override
+      protected void write (Output output, String key, Object value) {
+        output.write("late writer");
+      }
+    });
+    api.upload("popa", 42, new byte[] { 1, 2, 3 }, "object");
+
+    assertThat(planned.getNormalizedBody())
+        .doesNotContain("\r\n\r\npopa\r\n")
+        .contains("--BOUNDARY\r\nlate writer\r\n--BOUNDARY\r\nContent-Disposition: form-data; name=\"count\"");
+  }
+
+  @Test
+  public void plannedUrlencodedEqualsGeneric () {
+    val planned = new CapturingClient();
+    val encoder = new FormEncoder();
+    client(planned, encoder.contract(new Contract.Default()), encoder).login("user", "pass word");
+
+    assertThat(planned.getContentType()).isEqualTo("application/x-www-form-urlencoded; charset=UTF-8");
+    assertThat(planned.getNormalizedBody()).isEqualTo("login=user&password=pass+word");
+  }
+
+  @Test
+  public void contractKeepsTemplates () {
+    val metadatas = new FormEncoder().contract(new Contract.Default()).parseAndValidatateMetadata(Api.class);
+    val expected = new Contract.Default().parseAndValidatateMetadata(Api.class);
+
+    for (int index = 0; index < metadatas.size(); index++) {
+      assertThat(metadatas.get(index).template().headers())
+          .isEqualTo(expected.get(index).template().headers());
+    }
+  }
+
+  @Test
+  public void otherEncoderIgnoresPlans () {
+    val planned = new CapturingClient();
+    client(planned, new FormEncoder().contract(new Contract.Default()), new FormEncoder())
+        .upload("popa", 42, new byte[] { 1, 2, 3 }, "object");
+
+    val generic = new CapturingClient();
+    client(generic, new Contract.Default(), new FormEncoder())
+        .upload("popa", 42, new byte[] { 1, 2, 3 }, "object");
+
+    assertThat(planned.getContentType()).doesNotContain("feign-form-plan");
+    assertThat(planned.getNormalizedBody()).isEqualTo(generic.getNormalizedBody());
+  }
+
+  private static Api client (Client client, Contract contract, FormEncoder encoder) {
+    return Feign.builder()
+        .client(client)
+        .contract(contract)
+        .encoder(encoder)
+        .target(Api.class, "http://localhost:8080");
+  }
+
+  interface Api {
+
+    @RequestLine("POST /upload")
+    @Headers("Content-Type: multipart/form-data")
+    void upload (@Param("name") String name, @Param("count") int count,
+                 @Param("file") byte[] file, @Param("object") Object object);
+
+    @RequestLine("POST /login")
+    @Headers("Content-Type: application/x-www-form-urlencoded")
+    void login (@Param("login") String login, @Param("password") String password);
+
+    @RequestLine("POST /json")
+    @Headers("Content-Type: application/json")
+    void json (String body);
+  }
+
+  private static final class CapturingClient implements Client {
+
+    private final AtomicReference<Request> captured = new AtomicReference<>();
+
+    @Override
+    public Response execute (Request request, Request.Options options) {
+      captured.set(request);
+      return Response.builder()
+          .status(200)
+          .request(request)
+          .headers(Collections.<String, Collection<String>>emptyMap())
+          .body(new byte[0])
+          .build();
+    }
+
+    String getContentType () {
+      return captured.get().headers().get("Content-Type").iterator().next();
+    }
+
+    String getNormalizedBody () {
+      val body = new String(captured.get().body(), UTF_8);
+      val contentType = getContentType();
+      val index = contentType.indexOf("boundary=");
+      return index < 0
+             ? body
+             : body.replace(contentType.substring(index + "boundary=".length()), "BOUNDARY");
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import feign.Client;
+import feign.Feign;
+import feign.Headers;
+import feign.Request;
+import feign.RequestLine;
+import feign.RequestTemplate;
+import feign.Response;
+import feign.form.multipart.SegmentedBody;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class PreparedFormTest {
+
+  @Test
+  public void staticPartsGoFirst () {
+    val encoder = new FormEncoder();
+    val form = multipart(encoder).prepare(UTF_8, staticData(new byte[] { 1, 2, 3 }));
+    val client = new CapturingClient();
+    val api = client(client, encoder);
+
+    api.upload(form.bind(variableData("first")));
+    val first = client.getBody();
+    api.upload(form.bind(variableData("second")));
+    val second = client.getBody();
+
+    val all = staticData(new byte[] { 1, 2, 3 });
+    all.putAll(variableData("second"));
+    val expected = encode(multipart(encoder), form.getBoundary(), all);
+
+    assertThat(client.getContentType())
+        .isEqualTo("multipart/form-data; charset=UTF-8; boundary=" + form.getBoundary());
+    assertThat(new String(second, UTF_8)).isEqualTo(new String(expected, UTF_8));
+    assertThat(Arrays.copyOf(first, form.getStaticLength()))
+        .isEqualTo(Arrays.copyOf(second, form.getStaticLength()));
+    assertThat(new String(first, UTF_8)).contains("\r\n\r\nfirst\r\n");
+  }
+
+  @Test
+  public void staticStreamIsReadOnce () {
+    val reads = new AtomicInteger();
+    val stream = new ByteArrayInputStream("template content".getBytes(UTF_8)) {
+
+      @Override
+      public synchronized int read (byte[] bytes, int offset, int length) {
+        reads.incrementAndGet();
+        return super.read(bytes, offset, length);
+      }
+    };
+    val staticData = new LinkedHashMap<String, Object>();
+    staticData.put("template", stream);
+    val encoder = new FormEncoder();
+    val form = multipart(encoder).prepare(UTF_8, staticData);
+    val readsAfterPreparation = reads.get();
+
+    val client = new CapturingClient();
+    val api = client(client, encoder);
+    api.upload(form.bind(variableData("first")));
+    api.upload(form.bind(variableData("second")));
+
+    assertThat(reads.get()).isEqualTo(readsAfterPreparation);
+    assertThat(new String(client.getBody(), UTF_8))
+        .contains("template content")
+        .contains("second");
+  }
+
+  @Test
+  public void segmentedBodyReferencesStaticParts () throws IOException {
+    val big = new byte[2 * SegmentedBody.MIN_SHARED_SIZE];
+    Arrays.fill(big, (byte) 's');
+    val encoder = new FormEncoder();
+    val processor = multipart(encoder);
+    processor.setSegmented(true);
+    val form = processor.prepare(UTF_8, staticData(big));
+
+    val client = new CapturingClient();
+    client(client, encoder).upload(form.bind(variableData("variable")));
+
+    val body = StreamingBody.of(client.getRequest());
+    assertThat(body.getEncodedBody()).isInstanceOf(SegmentedBody.class);
+    // the static parts and the chunk of the variable ones
+    assertThat(((SegmentedBody) body.getEncodedBody()).getSegmentCount()).isEqualTo(2);
+
+    val all = staticData(big);
+    all.putAll(variableData("variable"));
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(encode(processor, form.getBoundary(), all));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void reservedKey () {
+    val form = new MultipartFormContentProcessor(null).prepare(UTF_8, staticData(new byte[0]));
+    form.encode(new RequestTemplate(), Collections.<String, Object>singletonMap("feign-form-static-parts", "popa"));
+  }
+
+  private static MultipartFormContentProcessor multipart (FormEncoder encoder) {
+    return (MultipartFormContentProcessor) encoder.getContentProcessor(ContentType.MULTIPART);
+  }
+
+  private static Map<String, Object> staticData (byte[] template) {
+    val result = new LinkedHashMap<String, Object>();
+    result.put("template", new FormData("application/octet-stream", "template.bin", template));
+    result.put("license", "Apache-2.0");
+    return result;
+  }
+
+  private static Map<String, Object> variableData (String value) {
+    val result = new LinkedHashMap<String, Object>();
+    result.put("value", value);
+    result.put("number", 42);
+    return result;
+  }
+
+  private static byte[] encode (MultipartFormContentProcessor processor, String boundary, Map<String, Object> data) {
+    val template = new RequestTemplate();
+    processor.setSegmented(false);
+    template.body(processor.createBody(UTF_8, boundary, data));
+    return template.requestBody().asBytes();
+  }
+
+  private static Api client (Client client, FormEncoder encoder) {
+    return Feign.builder()
+        .client(client)
+        .encoder(encoder)
+        .target(Api.class, "http://localhost:8080");
+  }
+
+  interface Api {
+
+    @RequestLine("POST /upload")
+    @Headers("Content-Type: multipart/form-data")
+    void upload (PreparedForm.Bound form);
+  }
+
+  private static final class CapturingClient implements Client {
+
+    private final AtomicReference<Request> captured = new AtomicReference<>();
+
+    @Override
+    public Response execute (Request request, Request.Options options) {
+      captured.set(request);
+      return Response.builder()
+          .status(200)
+          .request(request)
+          .headers(Collections.<String, Collection<String>>emptyMap())
+          .body(new byte[0])
+          .build();
+    }
+
+    Request getRequest () {
+      return captured.get();
+    }
+
+    String getContentType () {
+      return captured.get().headers().get("Content-Type").iterator().next();
+    }
+
+    byte[] getBody () {
+      return captured.get().body();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import feign.form.util.NumberUtil;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class PrimitiveArrayTest {
+
+  @Test
+  public void writeDecimal () {
+    val buffer = new byte[NumberUtil.MAX_LONG_LENGTH + 2];
+    val values = new long[] {
+        0, 7, -7, 10, 99, 100, -1234567890, Integer.MAX_VALUE, Integer.MIN_VALUE,
+        999999999999999999L, 1000000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+    for (val value : values) {
+      val length = NumberUtil.writeDecimal(value, buffer, 2);
+      assertThat(new String(buffer, 2, length, UTF_8)).isEqualTo(Long.toString(value));
+    }
+  }
+
+  @Test
+  public void urlencoded () {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("ids", new int[] { 1, -2, 3 });
+    data.put("big", new long[] { Long.MAX_VALUE });
+    data.put("ratio", new double[] { 1.5 });
+    data.put("small", new float[] { 0.1F });
+    data.put("flags", new boolean[] { true, false });
+    data.put("chars", new char[] { 'a', '&' });
+    data.put("empty", new short[0]);
+
+    val template = new RequestTemplate();
+    new UrlencodedFormContentProcessor().process(template, UTF_8, data);
+
+    assertThat(new String(template.body(), UTF_8)).isEqualTo(
+        "ids=1&ids=-2&ids=3&big=9223372036854775807&ratio=1.5&small=0.1&flags=true&flags=false&chars=a&chars=%26"
+    );
+  }
+
+  @Test
+  public void multipart () {
+    val primitives = new LinkedHashMap<String, Object>();
+    primitives.put("ids", new int[] { 1, -2, 3 });
+    primitives.put("ratio", new double[] { 1.5 });
+    primitives.put("flags", new boolean[] { true });
+
+    val boxed = new LinkedHashMap<String, Object>();
+    boxed.put("ids", new Integer[] { 1, -2, 3 });
+    boxed.put("ratio", new Double[] { 1.5 });
+    boxed.put("flags", new Boolean[] { true });
+
+    assertThat(writeMultipart(primitives)).isEqualTo(writeMultipart(boxed));
+  }
+
+  private static String writeMultipart (Map<String, Object> data) {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val output = new Output(UTF_8);
+    processor.write(output, "boundary", data);
+    return new String(output.toByteArray(), UTF_8);
+  }
+}
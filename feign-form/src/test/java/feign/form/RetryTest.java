@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import feign.Client;
+import feign.Feign;
+import feign.Headers;
+import feign.Param;
+import feign.Request;
+import feign.RequestLine;
+import feign.Response;
+import feign.Retryer;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class RetryTest {
+
+  @Test
+  public void retriedStreamingBodyIsTheSame () throws Exception {
+    val file = File.createTempFile("retry", ".txt");
+    file.deleteOnExit();
+    val stream = new FileOutputStream(file);
+    try {
+      stream.write("file content".getBytes(UTF_8));
+    } finally {
+      stream.close();
+    }
+    val source = new CountingSource("source content".getBytes(UTF_8));
+
+    val encoder = new FormEncoder();
+    val processor = (MultipartFormContentProcessor) encoder.getContentProcessor(ContentType.MULTIPART);
+    processor.setStreaming(true);
+
+    val client = new FailingClient(2);
+    val api = Feign.builder()
+        .client(client)
+        .encoder(encoder)
+        .retryer(new Retryer.Default(1, 1, 3))
+        .target(UploadApi.class, "http://localhost:8080");
+
+    assertThat(api.upload(file, source)).isEqualTo("ok");
+
+    assertThat(client.getBodies()).hasSize(3);
+    assertThat(source.getOpened()).isEqualTo(3);
+    val first = client.getBodies().get(0);
+    assertThat(new String(first, UTF_8))
+        .contains("file content")
+        .contains("source content");
+    for (byte[] body : client.getBodies()) {
+      assertThat(body).isEqualTo(first);
+    }
+  }
+
+  interface UploadApi {
+
+    @RequestLine("POST /upload")
+    @Headers("Content-Type: multipart/form-data")
+    String upload (@Param("file") File file, @Param("source") ContentSource source);
+  }
+
+  private static final class CountingSource implements ContentSource {
+
+    private final byte[] content;
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    CountingSource (byte[] content) {
+      this.content = content;
+    }
+
+    @Override
+    public InputStream openStream () {
+      opened.incrementAndGet();
+      return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public long getLength () {
+      return content.length;
+    }
+
+    int getOpened () {
+      return opened.get();
+    }
+  }
+
+  /**
+   * Writes the streaming body and fails the first attempts, as a broken connection would.
+   */
+  private static final class FailingClient implements Client {
+
+    private final List<byte[]> bodies = Collections.synchronizedList(new ArrayList<byte[]>());
+
+    private final AtomicInteger failures;
+
+    FailingClient (int failures) {
+      this.failures = new AtomicInteger(failures);
+    }
+
+    @Override
+    public Response execute (Request request, Request.Options options) throws IOException {
+      val body = StreamingBody.of(request);
+      val output = new ByteArrayOutputStream();
+      body.writeTo(output);
+      assertThat(output.size()).isEqualTo(body.getContentLength());
+      bodies.add(output.toByteArray());
+
+      if (failures.getAndDecrement() > 0) {
+        throw new IOException("Connection reset");
+      }
+      return Response.builder()
+          .status(200)
+          .reason("OK")
+          .headers(Collections.<String, Collection<String>>emptyMap())
+          .request(request)
+          .body("ok", UTF_8)
+          .build();
+    }
+
+    List<byte[]> getBodies () {
+      return bodies;
+    }
+  }
+}
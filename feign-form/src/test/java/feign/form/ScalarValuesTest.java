@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class ScalarValuesTest {
+
+  private static final UUID ID = UUID.fromString("1b4e28ba-2fa1-11d2-883f-0016d3cca427");
+
+  @Test
+  public void urlencoded () {
+    val template = new RequestTemplate();
+    new UrlencodedFormContentProcessor().process(template, UTF_8, createData());
+
+    assertThat(new String(template.body(), UTF_8)).isEqualTo(
+        "mode=FAST&id=1b4e28ba-2fa1-11d2-883f-0016d3cca427&uri=http%3A%2F%2Fexample.com%2Fa%3Fb%3Dc" +
+        "&letter=x&instant=2019-03-01T12%3A30%3A05Z&day=2019-03-01&ttl=PT1M"
+    );
+  }
+
+  @Test
+  public void multipart () {
+    // the default encoder fails on everything except strings and byte arrays
+    val encoder = new Encoder() {
+
+      @Override
+      public void encode (Object object, Type bodyType, RequestTemplate template) {
+        throw new EncodeException("Unexpected delegate call for " + object);
+      }
+    };
+    val processor = new MultipartFormContentProcessor(encoder);
+    val data = createData();
+
+    val body = writeMultipart(processor, data);
+    assertThat(body)
+        .contains(part("mode", "FAST"))
+        .contains(part("id", ID.toString()))
+        .contains(part("uri", "http://example.com/a?b=c"))
+        .contains(part("letter", "x"))
+        .contains(part("instant", "2019-03-01T12:30:05Z"))
+        .contains(part("day", "2019-03-01"))
+        .contains(part("ttl", "PT1M"));
+    assertThat(processor.getContentLength(UTF_8, "boundary", data)).isEqualTo(body.getBytes(UTF_8).length);
+  }
+
+  @Test
+  public void customFormatters () {
+    val encoder = new FormEncoder();
+    encoder.registerValueFormatter(Date.class, ValueFormatters.EPOCH_MILLIS_DATE);
+    encoder.registerValueFormatter(Mode.class, value -> value.toString().toLowerCase(Locale.ROOT));
+
+    val data = new LinkedHashMap<String, Object>();
+    data.put("date", new Date(1234));
+    data.put("mode", Mode.SLOW);
+
+    val template = new RequestTemplate();
+    encoder.getContentProcessor(ContentType.URLENCODED).process(template, UTF_8, data);
+    assertThat(new String(template.body(), UTF_8)).isEqualTo("date=1234&mode=slow");
+
+    val processor = (MultipartFormContentProcessor) encoder.getContentProcessor(ContentType.MULTIPART);
+    assertThat(writeMultipart(processor, data))
+        .contains(part("date", "1234"))
+        .contains(part("mode", "slow"));
+  }
+
+  @Test
+  public void dates () {
+    val date = new Date(1551443405007L);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("date", date);
+
+    val encoder = new FormEncoder();
+    val processor = (MultipartFormContentProcessor) encoder.getContentProcessor(ContentType.MULTIPART);
+    assertThat(writeMultipart(processor, data)).contains(part("date", date.toString()));
+
+    encoder.registerValueFormatter(Date.class, ValueFormatters.ISO_8601_DATE);
+    val template = new RequestTemplate();
+    encoder.getContentProcessor(ContentType.URLENCODED).process(template, UTF_8, data);
+    assertThat(new String(template.body(), UTF_8)).isEqualTo("date=2019-03-01T12%3A30%3A05.007Z");
+    assertThat(writeMultipart(processor, data)).contains(part("date", "2019-03-01T12:30:05.007Z"));
+  }
+
+  @Test
+  public void isoDates () {
+    val format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    val random = new Random(42);
+    val timestamps = new long[1000];
+    for (int i = 0; i < timestamps.length; i++) {
+      // years 1970 +/- 300
+      timestamps[i] = random.nextLong() % (300L * 366 * 24 * 3600 * 1000);
+    }
+    timestamps[0] = 0;
+    timestamps[1] = -1;
+    timestamps[2] = 951782400000L; // 2000-02-29
+
+    for (val timestamp : timestamps) {
+      val date = new Date(timestamp);
+      assertThat(ValueFormatters.ISO_8601_DATE.format(date)).isEqualTo(format.format(date));
+    }
+  }
+
+  private static Map<String, Object> createData () {
+    val data = new LinkedHashMap<String, Object>();
+    data.put("mode", Mode.FAST);
+    data.put("id", ID);
+    data.put("uri", URI.create("http://example.com/a?b=c"));
+    data.put("letter", 'x');
+    data.put("instant", Instant.ofEpochSecond(1551443405L));
+    data.put("day", LocalDate.of(2019, 3, 1));
+    data.put("ttl", Duration.ofMinutes(1));
+    return data;
+  }
+
+  private static String part (String name, String value) {
+    return "Content-Disposition: form-data; name=\"" + name + "\"\r\n" +
+           "Content-Type: text/plain; charset=UTF-8\r\n" +
+           "\r\n" +
+           value + "\r\n";
+  }
+
+  private static String writeMultipart (MultipartFormContentProcessor processor, Map<String, Object> data) {
+    val output = new Output(UTF_8);
+    processor.write(output, "boundary", data);
+    return new String(output.toByteArray(), UTF_8);
+  }
+
+  enum Mode {
+
+    FAST,
+    SLOW {
+
+      @Override
+      public String toString () {
+        return "Slow";
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import feign.form.multipart.SegmentedBody;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class SegmentedBodyTest {
+
+  private static final MultipartFormContentProcessor PROCESSOR;
+
+  static {
+    PROCESSOR = new MultipartFormContentProcessor(new Encoder.Default());
+  }
+
+  @Test
+  public void referencesBigArrays () throws Exception {
+    val big = new byte[100_000];
+    Arrays.fill(big, (byte) 'b');
+    val data = new LinkedHashMap<String, Object>();
+    data.put("small", new byte[] { 1, 2, 3 });
+    data.put("form", new FormData("application/octet-stream", "big.bin", big));
+    data.put("text", "popa");
+
+    val body = encode(data);
+
+    // chunk before the array, the array, chunk after it
+    assertThat(body.getSegmentCount()).isEqualTo(3);
+    assertThat(body.getLength()).isEqualTo(PROCESSOR.getContentLength(UTF_8, "boundary", data));
+
+    // the body references the array, not its copy, so it sees the change
+    big[0] = 'c';
+    val expected = encodeOnHeap(data);
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(expected);
+
+    val channel = new ByteArrayOutputStream();
+    body.writeTo(Channels.newChannel(channel));
+    assertThat(channel.toByteArray()).isEqualTo(expected);
+
+    val input = new ByteArrayOutputStream();
+    val inputStream = body.newInputStream();
+    val buffer = new byte[1000];
+    int read = inputStream.read(buffer);
+    while (read >= 0) {
+      input.write(buffer, 0, read);
+      read = inputStream.read(buffer);
+    }
+    assertThat(input.toByteArray()).isEqualTo(expected);
+  }
+
+  @Test
+  public void gatheringWrite () throws Exception {
+    val big = new byte[50_000];
+    Arrays.fill(big, (byte) 'g');
+    val data = new LinkedHashMap<String, Object>();
+    data.put("first", big);
+    data.put("second", big);
+
+    val body = encode(data);
+    val expected = encodeOnHeap(data);
+
+    val file = File.createTempFile("segmented-body", ".bin");
+    file.deleteOnExit();
+    val randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      body.writeTo(randomAccessFile.getChannel());
+      val actual = ByteBuffer.allocate(expected.length);
+      randomAccessFile.getChannel().read(actual, 0);
+      assertThat(randomAccessFile.length()).isEqualTo(expected.length);
+      assertThat(actual.array()).isEqualTo(expected);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  @Test
+  public void copiesSmallArrays () throws Exception {
+    val small = new byte[SegmentedBody.MIN_SHARED_SIZE - 1];
+    val data = new LinkedHashMap<String, Object>();
+    data.put("small", small);
+
+    val body = encode(data);
+    assertThat(body.getSegmentCount()).isEqualTo(1);
+
+    small[0] = 1;
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isNotEqualTo(encodeOnHeap(data));
+  }
+
+  @Test
+  public void sentBodyDropsSharedArrays () throws Exception {
+    val big = new byte[100_000];
+    Arrays.fill(big, (byte) 'b');
+    val data = new LinkedHashMap<String, Object>();
+    data.put("form", new FormData("application/octet-stream", "big.bin", big));
+
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setSegmented(true);
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    val body = StreamingBody.of(Request.create(
+        Request.HttpMethod.POST, "http://localhost", template.headers(), template.requestBody()));
+    val segmented = (SegmentedBody) body.getEncodedBody();
+
+    body.releaseSent(true);
+    assertThat(segmented.isReleased()).isTrue();
+    assertThat(segmented.getSegmentCount()).isZero();
+    assertThat(body.getEncodedBody()).isNull();
+  }
+
+  private SegmentedBody encode (LinkedHashMap<String, Object> data) throws Exception {
+    val output = Output.segmented(UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    return output.toSegmentedBody();
+  }
+
+  private byte[] encodeOnHeap (LinkedHashMap<String, Object> data) throws Exception {
+    val output = new Output(UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+import feign.form.multipart.Output;
+import feign.form.multipart.SpillingBody;
+import feign.form.util.MemoryBudget;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class SpillingBodyTest {
+
+  private static final MultipartFormContentProcessor PROCESSOR;
+
+  static {
+    PROCESSOR = new MultipartFormContentProcessor(new Encoder.Default());
+  }
+
+  @Test
+  public void smallBodyStaysInMemory () throws Exception {
+    val budget = new MemoryBudget(1024 * 1024);
+    val data = createData(100);
+
+    val body = encode(data, new SpillingBody(64 * 1024, budget, -1));
+
+    assertThat(body.isSpilled()).isFalse();
+    assertThat(budget.getReserved()).isPositive();
+    assertContent(body, data);
+
+    body.release();
+    assertThat(budget.getReserved()).isZero();
+  }
+
+  @Test
+  public void spillsOverThreshold () throws Exception {
+    val budget = new MemoryBudget(1024 * 1024);
+    val data = createData(100_000);
+
+    val body = encode(data, new SpillingBody(16 * 1024, budget, -1));
+
+    assertThat(body.isSpilled()).isTrue();
+    assertThat(body.getFile()).exists();
+    assertThat(budget.getReserved()).isZero();
+    assertContent(body, data);
+
+    body.release();
+    assertThat(body.getFile()).doesNotExist();
+  }
+
+  @Test
+  public void spillsWhenBudgetIsExhausted () throws Exception {
+    val budget = new MemoryBudget(16 * 1024);
+    val data = createData(30_000);
+
+    val first = encode(data, new SpillingBody(64 * 1024, budget, -1));
+    assertThat(first.isSpilled()).isTrue();
+
+    val reserved = new MemoryBudget(64 * 1024);
+    assertThat(reserved.tryReserve(60 * 1024)).isTrue();
+    val second = encode(createData(100), new SpillingBody(64 * 1024, reserved, -1));
+    assertThat(second.isSpilled()).isTrue();
+    assertContent(second, createData(100));
+
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void spillsKnownBigBodyRightAway () throws Exception {
+    val budget = new MemoryBudget(1024 * 1024);
+    val body = new SpillingBody(1024, budget, 2048);
+
+    assertThat(body.isSpilled()).isTrue();
+    body.close();
+    body.release();
+    assertThat(budget.getReserved()).isZero();
+  }
+
+  @Test
+  public void transfersFileParts () throws Exception {
+    val file = File.createTempFile("spilling-body", ".txt");
+    file.deleteOnExit();
+    val content = new byte[50_000];
+    Arrays.fill(content, (byte) 'f');
+    val stream = new FileOutputStream(file);
+    try {
+      stream.write(content);
+    } finally {
+      stream.close();
+    }
+    val data = new LinkedHashMap<String, Object>();
+    data.put("file", file);
+
+    val inMemory = encode(data, new SpillingBody(1024 * 1024, new MemoryBudget(1024 * 1024), -1));
+    assertThat(inMemory.isSpilled()).isFalse();
+    assertContent(inMemory, data);
+    inMemory.release();
+
+    val spilled = encode(data, new SpillingBody(20_000, new MemoryBudget(1024 * 1024), -1));
+    assertThat(spilled.isSpilled()).isTrue();
+    assertContent(spilled, data);
+    spilled.release();
+  }
+
+  @Test
+  public void sentBodyReleasesBudgetAndFile () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setSpillThreshold(16 * 1024);
+    val reservedBefore = MemoryBudget.SHARED.getReserved();
+
+    val small = streamingBody(processor, createData(100));
+    val smallBody = (SpillingBody) small.getEncodedBody();
+    assertThat(MemoryBudget.SHARED.getReserved()).isGreaterThan(reservedBefore);
+    small.releaseSent(true);
+    assertThat(smallBody.isReleased()).isTrue();
+    assertThat(MemoryBudget.SHARED.getReserved()).isEqualTo(reservedBefore);
+
+    val big = streamingBody(processor, createData(100_000));
+    val file = ((SpillingBody) big.getEncodedBody()).getFile();
+    assertThat(file).exists();
+    // the failed attempt keeps nothing, the repeatable parts are encoded lazily on a retry
+    big.releaseSent(false);
+    assertThat(file).doesNotExist();
+
+    val retry = new ByteArrayOutputStream();
+    big.writeTo(retry);
+    assertThat(retry.size()).isEqualTo(big.getContentLength());
+  }
+
+  @Test
+  public void failedOneShotBodyIsKeptForRetry () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setSpillThreshold(16 * 1024);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("stream", new ByteArrayInputStream(new byte[100_000]));
+
+    val body = streamingBody(processor, data);
+    val spilling = (SpillingBody) body.getEncodedBody();
+    body.releaseSent(false);
+    assertThat(spilling.isReleased()).isFalse();
+    assertThat(body.isRepeatable()).isTrue();
+
+    body.releaseSent(true);
+    assertThat(spilling.isReleased()).isTrue();
+    assertThat(spilling.getFile()).doesNotExist();
+  }
+
+  private StreamingBody streamingBody (MultipartFormContentProcessor processor, Map<String, Object> data) {
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    return StreamingBody.of(Request.create(
+        Request.HttpMethod.POST, "http://localhost", template.headers(), template.requestBody()));
+  }
+
+  private Map<String, Object> createData (int size) {
+    val bytes = new byte[size];
+    for (int index = 0; index < size; index++) {
+      bytes[index] = (byte) index;
+    }
+    val data = new LinkedHashMap<String, Object>();
+    data.put("text", "popa");
+    data.put("bytes", bytes);
+    return data;
+  }
+
+  private SpillingBody encode (Map<String, Object> data, SpillingBody body) throws Exception {
+    val output = new Output(body, UTF_8);
+    PROCESSOR.write(output, "boundary", data);
+    output.close();
+    return body;
+  }
+
+  private void assertContent (SpillingBody body, Map<String, Object> data) throws Exception {
+    val heap = new Output(UTF_8);
+    PROCESSOR.write(heap, "boundary", data);
+    heap.close();
+    val expected = heap.toByteArray();
+
+    assertThat(body.getLength()).isEqualTo(expected.length);
+
+    val stream = new ByteArrayOutputStream();
+    body.writeTo(stream);
+    assertThat(stream.toByteArray()).isEqualTo(expected);
+
+    val channel = new ByteArrayOutputStream();
+    body.writeTo(Channels.newChannel(channel));
+    assertThat(channel.toByteArray()).isEqualTo(expected);
+
+    val input = new ByteArrayOutputStream();
+    InputStream inputStream = body.newInputStream();
+    try {
+      val buffer = new byte[1000];
+      int read = inputStream.read(buffer);
+      while (read >= 0) {
+        input.write(buffer, 0, read);
+        read = inputStream.read(buffer);
+      }
+    } finally {
+      inputStream.close();
+    }
+    assertThat(input.toByteArray()).isEqualTo(expected);
+  }
+}
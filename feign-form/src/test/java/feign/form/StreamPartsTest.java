@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static feign.form.util.CharsetUtil.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import feign.Request;
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+import lombok.AllArgsConstructor;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class StreamPartsTest {
+
+  @Test
+  public void inputStreamOfUnknownLength () {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val data = new LinkedHashMap<String, Object>();
+    data.put("stream", stream("stream content"));
+    data.put("channel", Channels.newChannel(stream("channel content")));
+
+    assertThat(processor.getContentLength(UTF_8, "boundary", data)).isEqualTo(-1);
+
+    val body = encode(processor, data);
+    assertThat(body)
+        .contains("name=\"stream\"")
+        .contains("stream content")
+        .contains("name=\"channel\"")
+        .contains("channel content")
+        .contains("Content-Type: application/octet-stream");
+  }
+
+  @Test
+  public void streamingFormData () {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val data = new LinkedHashMap<String, Object>();
+    data.put("blob", StreamingFormData.builder()
+        .contentType("text/plain")
+        .fileName("blob.txt")
+        .source(ContentSources.of(stream("blob content"), 12))
+        .build());
+
+    val body = encode(processor, data);
+    assertThat(body)
+        .contains("name=\"blob\"; filename=\"blob.txt\"")
+        .contains("Content-Type: text/plain")
+        .contains("blob content");
+
+    val boundary = body.substring(2, body.indexOf('\r'));
+    assertThat(processor.getContentLength(UTF_8, boundary, data)).isEqualTo(body.getBytes(UTF_8).length);
+  }
+
+  @Test
+  public void declaredLengthIsChecked () {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    val data = new LinkedHashMap<String, Object>();
+    data.put("blob", StreamingFormData.builder()
+        .source(ContentSources.of(stream("blob content"), 4))
+        .build());
+
+    try {
+      encode(processor, data);
+      fail("Longer content must be rejected");
+    } catch (EncodeException ex) {
+      assertThat(ex).hasMessageContaining("longer than its declared length");
+    }
+  }
+
+  @Test
+  public void oneShotStreamingBody () throws Exception {
+    val processor = new MultipartFormContentProcessor(new Encoder.Default());
+    processor.setStreaming(true);
+    val data = new LinkedHashMap<String, Object>();
+    data.put("stream", stream("stream content"));
+
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    val body = StreamingBody.of(Request.create(
+        Request.HttpMethod.POST, "http://localhost", template.headers(), template.requestBody()));
+
+    assertThat(body.isRepeatable()).isFalse();
+    assertThat(body.getContentLength()).isEqualTo(-1);
+
+    val output = new ByteArrayOutputStream();
+    body.writeTo(output);
+    assertThat(new String(output.toByteArray(), UTF_8)).contains("stream content");
+
+    try {
+      body.writeTo(new ByteArrayOutputStream());
+      fail("One-shot body must not be written twice");
+    } catch (IOException ex) {
+      assertThat(ex).hasMessageContaining("one-shot");
+    }
+  }
+
+  @Test
+  public void nestedOneShotValues () {
+    val nested = new LinkedHashMap<String, Object>();
+    nested.put("stream", stream("nested content"));
+
+    assertThat(ContentSources.isRepeatable(new Object[] { "text", stream("content") })).isFalse();
+    assertThat(ContentSources.isRepeatable(asList(asList(new byte[1], stream("content"))))).isFalse();
+    assertThat(ContentSources.isRepeatable(nested)).isFalse();
+    assertThat(ContentSources.isRepeatable(new Upload("popa", stream("content")))).isFalse();
+    assertThat(ContentSources.isRepeatable(asList(new Upload("popa", new byte[1]), new int[] { 1 }))).isTrue();
+  }
+
+  private String encode (MultipartFormContentProcessor processor, Map<String, Object> data) {
+    val template = new RequestTemplate();
+    processor.process(template, UTF_8, data);
+    return new String(template.requestBody().asBytes(), UTF_8);
+  }
+
+  private InputStream stream (String content) {
+    return new ByteArrayInputStream(content.getBytes(UTF_8));
+  }
+
+  @AllArgsConstructor
+  public static class Upload {
+
+    String name;
+
+    Object content;
+  }
+}
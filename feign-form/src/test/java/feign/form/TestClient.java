@@ -17,6 +17,7 @@
 package feign.form;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +46,10 @@ public interface TestClient {
   @Headers("Content-Type: multipart/form-data")
   String upload (@Param("file") File file);
 
+  @RequestLine("POST /upload")
+  @Headers("Content-Type: multipart/form-data")
+  String upload (@Param("file") Path file);
+
   @RequestLine("POST /json")
   @Headers("Content-Type: application/json")
   String json (Dto dto);
@@ -60,6 +65,10 @@ public interface TestClient {
   @Headers("Content-Type: multipart/form-data")
   String uploadWithList (@Param("files") List<File> files);
 
+  @RequestLine("POST /upload/files")
+  @Headers("Content-Type: multipart/form-data")
+  String uploadWithPathList (@Param("files") List<Path> files);
+
   @RequestLine("POST /upload/files")
   @Headers("Content-Type: multipart/form-data")
   String uploadWithManyFiles (@Param("files") File file1, @Param("files") File file2);
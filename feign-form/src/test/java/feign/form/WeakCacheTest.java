@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import feign.form.util.WeakCache;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class WeakCacheTest {
+
+  @Test
+  public void keepsCachedValue () {
+    val cache = new WeakCache<String, Integer>();
+
+    assertThat(cache.get("key")).isNull();
+    assertThat(cache.putIfAbsent("key", 1)).isEqualTo(1);
+    assertThat(cache.putIfAbsent("key", 2)).isEqualTo(1);
+    assertThat(cache.get("key")).isEqualTo(1);
+  }
+
+  @Test
+  public void doesNotPinKeys () throws Exception {
+    val cache = new WeakCache<Object, String>();
+    cache.putIfAbsent(new Object(), "value");
+
+    for (int attempt = 0; attempt < 50 && cache.size() > 0; attempt++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(cache.size()).isZero();
+  }
+}
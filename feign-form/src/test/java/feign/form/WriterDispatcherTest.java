@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package feign.form;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Collections;
+
+import feign.form.multipart.ByteArrayWriter;
+import feign.form.multipart.ManyFilesWriter;
+import feign.form.multipart.ManyParametersWriter;
+import feign.form.multipart.Output;
+import feign.form.multipart.SingleParameterWriter;
+import feign.form.multipart.Writer;
+import feign.form.multipart.WriterDispatcher;
+import lombok.val;
+import org.junit.Test;
+
+/**
+ * @author Artem Labazin
+ */
+public class WriterDispatcherTest {
+
+  @Test
+  public void findByClass () {
+    val parameterWriter = new SingleParameterWriter();
+    val byteArrayWriter = new ByteArrayWriter();
+    val dispatcher = new WriterDispatcher(byteArrayWriter, parameterWriter);
+
+    assertThat(dispatcher.find("popa")).isSameAs(parameterWriter);
+    assertThat(dispatcher.find(42)).isSameAs(parameterWriter);
+    assertThat(dispatcher.find(new byte[0])).isSameAs(byteArrayWriter);
+    assertThat(dispatcher.find(new Object())).isNull();
+    assertThat(dispatcher.find(null)).isNull();
+  }
+
+  @Test
+  public void findByValue () {
+    val filesWriter = new ManyFilesWriter();
+    val parametersWriter = new ManyParametersWriter();
+    val dispatcher = new WriterDispatcher(filesWriter, parametersWriter);
+
+    assertThat(dispatcher.find(asList(new File("popa.txt")))).isSameAs(filesWriter);
+    assertThat(dispatcher.find(asList("one", "two"))).isSameAs(parametersWriter);
+    assertThat(dispatcher.find(Collections.emptyList())).isNull();
+  }
+
+  @Test
+  public void addWriters () {
+    val parameterWriter = new SingleParameterWriter();
+    val dispatcher = new WriterDispatcher(parameterWriter);
+    assertThat(dispatcher.find("popa")).isSameAs(parameterWriter);
+
+    val untypedWriter = new UntypedWriter();
+    dispatcher.addFirst(untypedWriter);
+    assertThat(dispatcher.find("popa")).isSameAs(untypedWriter);
+    assertThat(dispatcher.find(42)).isSameAs(parameterWriter);
+
+    val lastWriter = new UntypedWriter();
+    dispatcher.addLast(lastWriter);
+    assertThat(dispatcher.find(new Object())).isSameAs(untypedWriter);
+    assertThat(dispatcher.getWriters()).containsExactly(untypedWriter, parameterWriter, lastWriter);
+  }
+
+  @Test
+  public void subclassOverridingOnlyValueCheck () {
+    val shortStringsWriter = new ShortStringsWriter();
+    val parameterWriter = new SingleParameterWriter();
+    val dispatcher = new WriterDispatcher(shortStringsWriter, parameterWriter);
+
+    assertThat(dispatcher.find("popa")).isSameAs(shortStringsWriter);
+    assertThat(dispatcher.find("very long string")).isSameAs(parameterWriter);
+    assertThat(dispatcher.findFor(String.class)).isNull();
+    assertThat(dispatcher.find(42)).isSameAs(parameterWriter);
+  }
+
+  private static class ShortStringsWriter extends SingleParameterWriter {
+
+    @Override
+    public boolean isApplicable (Object value) {
+      return value instanceof String && ((String) value).length() < 5;
+    }
+  }
+
+  private static class UntypedWriter implements Writer {
+
+    @Override
+    public void write (Output output, String boundary, String key, Object value) {
+      output.write(key);
+    }
+
+    @Override
+    public boolean isApplicable (Object value) {
+      return !(value instanceof Number);
+    }
+  }
+}